@@ -0,0 +1,191 @@
+package com.jsonanalyzer.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.jsonanalyzer.main.KWayMerger;
+import com.jsonanalyzer.main.Main;
+import com.jsonanalyzer.main.ProgramOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Throughput of the hot paths on the generated bundles, run with the gc profiler to get the allocation rate:
+ * {@code java -jar benchmarks/target/benchmarks.jar -prof gc}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class AnalyzerBenchmark {
+
+    private static final double CHANGED_SHARE = 0.1;
+
+    private static class PlainMapCursor implements KWayMerger.EntryCursor<JsonNode> {
+
+        private final Iterator<Map.Entry<String, JsonNode>> iterator;
+        private Map.Entry<String, JsonNode> entry;
+
+        private PlainMapCursor(Map<String, JsonNode> sortedPlainMap) {
+            this.iterator = sortedPlainMap.entrySet().iterator();
+        }
+
+        @Override
+        public boolean next() {
+            entry = iterator.hasNext() ? iterator.next() : null;
+            return entry != null;
+        }
+
+        @Override
+        public String getKey() {
+            return entry.getKey();
+        }
+
+        @Override
+        public JsonNode getValue() {
+            return entry.getValue();
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+    @Param({"10000", "100000"})
+    private int keysCount;
+
+    @Param({"4"})
+    private int depth;
+
+    @Param({"8"})
+    private int branching;
+
+    @Param({"40"})
+    private int valueLength;
+
+    private Path directory;
+    private Path firstFilePath;
+    private Path secondFilePath;
+
+    private JsonNode firstTree;
+    private Map<String, JsonNode> firstPlainMap;
+    private Map<String, JsonNode> secondPlainMap;
+    private String firstFileContent;
+
+    private PrintStream originalOut;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+
+        directory = Files.createTempDirectory("json-analyzer-benchmark");
+        firstFilePath = directory.resolve("first.json");
+        secondFilePath = directory.resolve("second.json");
+
+        BundleGenerator generator = new BundleGenerator(keysCount, depth, branching, valueLength);
+        generator.write(firstFilePath, 1, 0);
+        generator.write(secondFilePath, 1, CHANGED_SHARE);
+
+        firstTree = Main.readJsonTreeByFilePath(firstFilePath.toString());
+        firstPlainMap = Main.getSortedPlainMapOfNodes(firstTree);
+        secondPlainMap = Main.getSortedPlainMapOfNodes(Main.readJsonTreeByFilePath(secondFilePath.toString()));
+        firstFileContent = new String(Files.readAllBytes(firstFilePath), StandardCharsets.UTF_8);
+
+        // the commands report their progress, which only adds noise here
+        originalOut = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+
+            @Override
+            public void write(int b) {
+            }
+
+        }));
+
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+
+        System.setOut(originalOut);
+
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+
+    }
+
+    @Benchmark
+    public JsonNode readJsonTreeByFilePath() throws IOException {
+        return Main.readJsonTreeByFilePath(firstFilePath.toString());
+    }
+
+    @Benchmark
+    public Map<String, JsonNode> getSortedPlainMapOfNodes() {
+        return Main.getSortedPlainMapOfNodes(firstTree);
+    }
+
+    @Benchmark
+    public Map<String, JsonNode>[] findUniqueEntries() {
+        return Main.findUniqueEntries(firstPlainMap, secondPlainMap);
+    }
+
+    /**
+     * The merge engine alone, over the sorted plain maps already in memory, taking the last value of each key.
+     */
+    @Benchmark
+    public int mergeSortedSources(Blackhole blackhole) throws IOException {
+
+        int mergedEntriesCount = 0;
+
+        try (KWayMerger<JsonNode> merger = new KWayMerger<>(Arrays.asList(
+                new PlainMapCursor(firstPlainMap), new PlainMapCursor(secondPlainMap)))) {
+            while (merger.nextGroup()) {
+                blackhole.consume(merger.getValue(merger.getGroupSize() - 1));
+                mergedEntriesCount++;
+            }
+        }
+
+        return mergedEntriesCount;
+
+    }
+
+    /**
+     * End-to-end run of the -merge command: parsing, spilling, writing & moving the output files to the disk
+     * are all timed, so it measures the I/O far more than the merge engine.
+     */
+    @Benchmark
+    public void mergeCommandEndToEnd() throws IOException {
+        Main.run(ProgramOptions.MERGE.getName(), firstFilePath.toString(), secondFilePath.toString());
+    }
+
+    @Benchmark
+    public void writeToFile() throws IOException {
+        Main.writeToFile(directory, "written.json", firstFileContent);
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.jsonanalyzer.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.MessageFormat;
+import java.util.Random;
+
+/**
+ * Generates synthetic i18n-like bundles: nested objects of translation keys with the string values.
+ * The intermediate objects are named from a pool of {@code branching} names on each level, so the smaller the pool,
+ * the more the flattened keys share their prefixes. The same seed always gives the same bundle, and the variants
+ * (with some of the keys removed, added or changed) are generated off the same seed, to get the realistic diffs.
+ */
+public class BundleGenerator {
+
+    private static final String[] WORDS = {"component", "basket", "checkout", "button", "title", "label", "error",
+            "account", "profile", "search", "filter", "product", "details", "summary", "payment", "delivery"};
+
+    private final int keysCount;
+    private final int depth;
+    private final int branching;
+    private final int valueLength;
+
+    public BundleGenerator(int keysCount, int depth, int branching, int valueLength) {
+
+        if (keysCount < 0 || depth < 1 || branching < 1 || valueLength < 1) {
+            throw new IllegalArgumentException(MessageFormat.format(
+                    "Invalid bundle parameters: {0} keys, depth {1}, branching {2}, value length {3}",
+                    keysCount, depth, branching, valueLength
+            ));
+        }
+
+        this.keysCount = keysCount;
+        this.depth = depth;
+        this.branching = branching;
+        this.valueLength = valueLength;
+
+    }
+
+    public static void main(String[] args) throws IOException {
+
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Usage: BundleGenerator {target_file} {keys_count} "
+                    + "[{depth} {branching} {value_length} {seed} {changed_share}]");
+        }
+
+        BundleGenerator generator = new BundleGenerator(
+                Integer.parseInt(args[1]),
+                args.length > 2 ? Integer.parseInt(args[2]) : 4,
+                args.length > 3 ? Integer.parseInt(args[3]) : 8,
+                args.length > 4 ? Integer.parseInt(args[4]) : 40
+        );
+
+        generator.write(Paths.get(args[0]),
+                args.length > 5 ? Long.parseLong(args[5]) : 0,
+                args.length > 6 ? Double.parseDouble(args[6]) : 0);
+
+    }
+
+    public ObjectNode generate(long seed) {
+        return generate(seed, 0);
+    }
+
+    /**
+     * Generates the variant of the bundle, where about {@code changedShare} of the keys are removed,
+     * the same number of keys is added and the same number of values is changed.
+     */
+    public ObjectNode generate(long seed, double changedShare) {
+
+        ObjectNode rootNode = JsonNodeFactory.instance.objectNode();
+        int addedKeysCount = (int) (keysCount * changedShare);
+
+        for (int i = 0; i < keysCount + addedKeysCount; i++) {
+
+            Random keyRandom = new Random(seed * 31 + i);
+            double keyDraw = keyRandom.nextDouble();
+            if (i < keysCount && keyDraw < changedShare) {
+                continue;
+            }
+
+            ObjectNode parentNode = rootNode;
+            for (int level = 1; level < depth; level++) {
+                String nodeName = getNodeName(keyRandom.nextInt(branching));
+                parentNode = parentNode.has(nodeName) ? (ObjectNode) parentNode.get(nodeName) : parentNode.putObject(nodeName);
+            }
+
+            String value = generateValue(keyRandom);
+            if (i < keysCount && keyDraw < 2 * changedShare) {
+                value = value + " (changed)";
+            }
+            parentNode.put("key" + i, value);
+
+        }
+
+        return rootNode;
+
+    }
+
+    public void write(Path targetFilePath, long seed, double changedShare) throws IOException {
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(targetFilePath.toFile(), generate(seed, changedShare));
+    }
+
+    private static String getNodeName(int index) {
+        String word = WORDS[index % WORDS.length];
+        return index < WORDS.length ? word : word + index / WORDS.length;
+    }
+
+    private String generateValue(Random random) {
+
+        StringBuilder value = new StringBuilder(valueLength + 16);
+
+        while (value.length() < valueLength) {
+            if (value.length() > 0) {
+                value.append(' ');
+            }
+            value.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+
+        return value.substring(0, valueLength);
+
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.jsonanalyzer.build;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the cold start of a command: the time from launching it to the first byte of its output,
+ * which is what's felt on every short CLI run. The startup profile of the build compiles it on its own
+ * (it's not a part of the jar) and runs the launcher of the distribution through it, with and without
+ * the class data sharing archive, so the changes of the startup time can be tracked.
+ */
+public final class StartupTimer {
+
+    private StartupTimer() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+
+        if (args.length < 3) {
+            throw new IllegalArgumentException("Usage: StartupTimer {label} {runs} {command} {arguments} ...");
+        }
+
+        String label = args[0];
+        int runs;
+        try {
+            runs = Integer.parseInt(args[1]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(MessageFormat.format("Invalid number of runs: {0}", args[1]), e);
+        }
+        if (runs < 1) {
+            throw new IllegalArgumentException(MessageFormat.format("Invalid number of runs: {0}", args[1]));
+        }
+        List<String> command = Arrays.asList(args).subList(2, args.length);
+
+        double[] millis = new double[runs];
+        for (int i = 0; i < runs; i++) {
+            millis[i] = measureFirstOutput(command) / 1_000_000.0;
+        }
+        Arrays.sort(millis);
+
+        System.out.println(MessageFormat.format(
+                "Startup time ({0}): median {1,number,0.0} ms, min {2,number,0.0} ms, max {3,number,0.0} ms, {4} run(s)",
+                label, millis[runs / 2], millis[0], millis[runs - 1], runs
+        ));
+
+    }
+
+    private static long measureFirstOutput(List<String> command) throws IOException, InterruptedException {
+
+        long startNanos = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+
+        long firstOutputNanos;
+        try (InputStream outputStream = process.getInputStream()) {
+            if (outputStream.read() < 0) {
+                throw new IllegalStateException(MessageFormat.format("No output from: {0}", command));
+            }
+            firstOutputNanos = System.nanoTime() - startNanos;
+            byte[] buffer = new byte[8192];
+            while (outputStream.read(buffer) >= 0) {
+                // the rest of the output is drained, so the process isn't blocked on a full pipe
+            }
+        }
+
+        int exitCode = process.waitFor();
+        if (exitCode != 0) {
+            throw new IllegalStateException(MessageFormat.format("Exit code {0} of: {1}", exitCode, command));
+        }
+
+        return firstOutputNanos;
+
+    }
+
+}
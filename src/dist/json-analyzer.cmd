@@ -0,0 +1,48 @@
+@echo off
+rem Runs JsonAnalyzer with a class data sharing archive, so the classes of the JVM, Jackson and the tool itself
+rem are mapped from the archive instead of being loaded & verified on every run.
+rem The archive is bound to the JDK and to the location of the jar it was dumped with (JDK 17, for one, refuses it
+rem once the jar is moved), so it's dumped from the class list of the distribution on the first launch,
+rem and again whenever the distribution is moved or JAVA_HOME changes. JSON_ANALYZER_CDS=off runs without it.
+
+setlocal
+set "APP_HOME=%~dp0"
+set "ARCHIVE=%APP_HOME%JsonAnalyzer.jsa"
+set "ARCHIVE_STAMP=%APP_HOME%JsonAnalyzer.jsa.stamp"
+
+if defined JAVA_HOME (
+    set "JAVA=%JAVA_HOME%\bin\java"
+) else (
+    set "JAVA=java"
+)
+
+if /i "%JSON_ANALYZER_CDS%"=="off" goto plain
+
+rem the stamp is written even if the dump fails (like on JDK 8), so it isn't retried on every launch
+set "STAMP=%APP_HOME%;%JAVA_HOME%"
+set "ARCHIVE_STAMP_READ="
+if exist "%ARCHIVE_STAMP%" set /p ARCHIVE_STAMP_READ=<"%ARCHIVE_STAMP%"
+if not exist "%APP_HOME%classes.lst" goto run
+if "%ARCHIVE_STAMP_READ%"=="%STAMP%" goto run
+type nul > "%ARCHIVE_STAMP%.tmp" 2> nul || goto run
+del /f /q "%ARCHIVE_STAMP%.tmp"
+
+if exist "%ARCHIVE%" del /f /q "%ARCHIVE%"
+rem dumped aside and moved in place, so a launch running at the same time never maps a half-written archive
+"%JAVA%" -Xshare:dump -XX:SharedClassListFile="%APP_HOME%classes.lst" -XX:SharedArchiveFile="%ARCHIVE%.tmp" ^
+    -cp "%APP_HOME%JsonAnalyzer.jar" > nul 2>&1
+if errorlevel 1 (
+    if exist "%ARCHIVE%.tmp" del /f /q "%ARCHIVE%.tmp"
+) else (
+    move /y "%ARCHIVE%.tmp" "%ARCHIVE%" > nul
+)
+> "%ARCHIVE_STAMP%" echo %STAMP%
+
+:run
+if not exist "%ARCHIVE%" goto plain
+"%JAVA%" -XX:SharedArchiveFile="%ARCHIVE%" -Xshare:auto %JAVA_OPTS% -jar "%APP_HOME%JsonAnalyzer.jar" %*
+exit /b %ERRORLEVEL%
+
+:plain
+"%JAVA%" %JAVA_OPTS% -jar "%APP_HOME%JsonAnalyzer.jar" %*
+exit /b %ERRORLEVEL%
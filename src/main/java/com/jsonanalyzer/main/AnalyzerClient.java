@@ -0,0 +1,223 @@
+package com.jsonanalyzer.main;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Thin client of the {@link AnalyzerServer}: sends the commands & prints their output, loading only the JDK classes,
+ * the server constants and the enums of the options & flags (but not Jackson), so it starts as fast as the JVM allows.
+ * Relative paths are resolved against the working directory of the client, since the server has its own one.
+ */
+public class AnalyzerClient {
+
+    private static final String BATCH_FLAG = "-batch";
+
+    public static void main(String... args) throws IOException {
+
+        int exitCode = run(args);
+
+        if (exitCode != 0) {
+            System.exit(exitCode);
+        }
+
+    }
+
+    public static int run(String... args) throws IOException {
+        return run(AnalyzerServer.getServerFilePath(), args);
+    }
+
+    public static int run(Path serverFilePath, String... args) throws IOException {
+
+        if (args.length == 0) {
+            throw new IllegalArgumentException("Nothing to send to the server, pass a command, -batch {commands_file} or -shutdown");
+        }
+
+        List<String[]> commands = new ArrayList<>();
+        if (BATCH_FLAG.equalsIgnoreCase(args[0])) {
+            if (args.length != 2) {
+                throw new IllegalArgumentException("Batch mode requires exactly one commands file");
+            }
+            for (String line : Files.readAllLines(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+                String trimmedLine = line.trim();
+                if (!trimmedLine.isEmpty() && !trimmedLine.startsWith("#")) {
+                    commands.add(splitCommandLine(trimmedLine));
+                }
+            }
+        } else {
+            commands.add(args);
+        }
+
+        Properties serverProperties = new Properties();
+        try (Reader reader = Files.newBufferedReader(serverFilePath, StandardCharsets.UTF_8)) {
+            serverProperties.load(reader);
+        } catch (NoSuchFileException e) {
+            throw new IllegalStateException("Server is not running, start it with -server");
+        }
+        int port = Integer.parseInt(serverProperties.getProperty("port"));
+
+        int failedCommandsCount = 0;
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+
+            writer.write("auth " + serverProperties.getProperty("token") + "\n");
+            for (String[] command : commands) {
+                writer.write(toJsonArray(toAbsolutePaths(command)) + "\n");
+            }
+            writer.flush();
+            socket.shutdownOutput();
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("out ")) {
+                    System.out.println(line.substring(4));
+                } else if (line.startsWith("err ")) {
+                    System.err.println(line.substring(4));
+                } else if (line.startsWith("end ") && !"end 0".equals(line)) {
+                    failedCommandsCount++;
+                }
+            }
+
+        } catch (ConnectException e) {
+            throw new IllegalStateException(MessageFormat.format("Server is not running on port {0,number,#}", port));
+        }
+
+        return failedCommandsCount == 0 ? 0 : 1;
+
+    }
+
+    public static String[] splitCommandLine(String line) {
+
+        List<String> arguments = new ArrayList<>();
+        StringBuilder argument = new StringBuilder();
+        boolean isQuoted = false;
+        boolean hasArgument = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                isQuoted = !isQuoted;
+                hasArgument = true;
+            } else if (Character.isWhitespace(c) && !isQuoted) {
+                if (hasArgument) {
+                    arguments.add(argument.toString());
+                    argument.setLength(0);
+                    hasArgument = false;
+                }
+            } else {
+                argument.append(c);
+                hasArgument = true;
+            }
+        }
+
+        if (isQuoted) {
+            throw new IllegalArgumentException(MessageFormat.format("Unclosed quote in command: {0}", line));
+        }
+        if (hasArgument) {
+            arguments.add(argument.toString());
+        }
+
+        return arguments.toArray(new String[0]);
+
+    }
+
+    /**
+     * Resolves the paths by their positions in the command, as they don't have to exist yet and can be globs:
+     * every argument of the option is a file (or a named set of files, like "set=dir" for -find & -index),
+     * and so is the value of each of the path flags, like -temp-dir.
+     */
+    public static String[] toAbsolutePaths(String[] command) {
+
+        String[] resolvedCommand = command.clone();
+        String option = null;
+
+        for (int i = 0; i < command.length; i++) {
+
+            String argument = command[i];
+            ProgramFlags flag = getFlag(argument);
+
+            if (flag != null) {
+                if (flag.isWithValue() && i + 1 < command.length) {
+                    i++;
+                    if (flag.isWithPathValue()) {
+                        resolvedCommand[i] = toAbsolutePath(command[i]);
+                    }
+                }
+            } else if (option == null) {
+                option = argument;
+            } else if (argument.contains("=") && (ProgramOptions.FIND.getName().equalsIgnoreCase(option)
+                    || ProgramOptions.INDEX.getName().equalsIgnoreCase(option))) {
+                int separatorIndex = argument.indexOf('=');
+                resolvedCommand[i] = argument.substring(0, separatorIndex + 1)
+                        + toAbsolutePath(argument.substring(separatorIndex + 1));
+            } else {
+                resolvedCommand[i] = toAbsolutePath(argument);
+            }
+
+        }
+
+        return resolvedCommand;
+
+    }
+
+    private static ProgramFlags getFlag(String argument) {
+        for (ProgramFlags flag : ProgramFlags.values()) {
+            if (flag.getName().equalsIgnoreCase(argument)) {
+                return flag;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Unlike {@link Paths}, {@link File} takes the glob chars which aren't valid in the paths of some file systems.
+     */
+    private static String toAbsolutePath(String path) {
+        return path.isEmpty() ? path : new File(path).getAbsolutePath();
+    }
+
+    private static String toJsonArray(String[] command) {
+
+        StringBuilder json = new StringBuilder("[");
+
+        for (int i = 0; i < command.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append('"');
+            for (char c : command[i].toCharArray()) {
+                if (c == '"' || c == '\\') {
+                    json.append('\\').append(c);
+                } else if (c < 0x20) {
+                    json.append(String.format("\\u%04x", (int) c));
+                } else {
+                    json.append(c);
+                }
+            }
+            json.append('"');
+        }
+
+        return json.append(']').toString();
+
+    }
+
+}
@@ -0,0 +1,277 @@
+package com.jsonanalyzer.main;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.text.MessageFormat;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * Keeps a warmed-up JVM listening on the loopback interface, so the commands sent by {@link AnalyzerClient}
+ * don't pay for the JVM startup, class loading & JIT warm-up again, and the recently parsed files stay in memory.
+ * <p>
+ * Protocol: the first line of each connection is {@code auth <token>}, then each line is a JSON array
+ * with the arguments of one command. Every command is answered with its {@code out <line>} & {@code err <line>}
+ * output lines, followed by {@code end 0} on success or {@code end 1} on failure.
+ * Commands are executed one at a time, the port & token are published in {@value #SERVER_FILE_NAME}
+ * in the home directory, readable by the owner only.
+ */
+public class AnalyzerServer {
+
+    public static final String SERVER_FILE_NAME = ".json-analyzer-server";
+    public static final String SHUTDOWN_COMMAND = "-shutdown";
+
+    // the parsed files can take up to a quarter of the heap, the rest is left for the commands
+    private static final int PARSED_FILES_CACHE_HEAP_DIVISOR = 4;
+
+    private final ServerSocket serverSocket;
+    private final String token;
+    private final PrintStream serverErr;
+    private final Object commandLock = new Object();
+
+    private volatile boolean isRunning = true;
+    private Path serverFilePath;
+
+    public AnalyzerServer(int port) throws IOException {
+        this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        this.token = UUID.randomUUID().toString();
+        this.serverErr = System.err;
+    }
+
+    public static void main(String... args) throws IOException {
+
+        int port = 0;
+        if (args.length > 0) {
+            try {
+                port = Integer.parseInt(args[0]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(MessageFormat.format("Invalid port: {0}", args[0]));
+            }
+        }
+
+        AnalyzerServer server = new AnalyzerServer(port);
+        server.publish(getServerFilePath());
+
+        System.out.println(MessageFormat.format("Server is listening on port {0,number,#}", server.getPort()));
+
+        server.serve();
+
+    }
+
+    public static Path getServerFilePath() {
+        return Paths.get(System.getProperty("user.home"), SERVER_FILE_NAME);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public void publish(Path filePath) throws IOException {
+
+        Properties properties = new Properties();
+        properties.setProperty("port", String.valueOf(getPort()));
+        properties.setProperty("token", token);
+
+        Files.deleteIfExists(filePath);
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(filePath, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        }
+
+        try (Writer writer = Files.newBufferedWriter(filePath, StandardCharsets.UTF_8)) {
+            properties.store(writer, null);
+        }
+
+        serverFilePath = filePath;
+
+    }
+
+    public void serve() throws IOException {
+
+        Main.keepParsedFilesInMemory(ParsedFilesMemoryCache.getHeapShareBytes(PARSED_FILES_CACHE_HEAP_DIVISOR));
+
+        try {
+            while (isRunning) {
+                Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (SocketException e) {
+                    if (!isRunning) {
+                        break;
+                    }
+                    throw e;
+                }
+                Thread connectionThread = new Thread(() -> handleConnection(socket), "analyzer-connection");
+                connectionThread.setDaemon(true);
+                connectionThread.start();
+            }
+        } finally {
+            serverSocket.close();
+            Main.keepParsedFilesInMemory(0);
+            if (serverFilePath != null) {
+                Files.deleteIfExists(serverFilePath);
+            }
+        }
+
+    }
+
+    public void shutdown() throws IOException {
+        isRunning = false;
+        serverSocket.close();
+    }
+
+    private void handleConnection(Socket socket) {
+
+        try (Socket connection = socket;
+             BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+             Writer writer = new BufferedWriter(new OutputStreamWriter(connection.getOutputStream(), StandardCharsets.UTF_8))) {
+
+            if (!("auth " + token).equals(reader.readLine())) {
+                writeFailure(writer, "Invalid token, the server was probably restarted");
+                return;
+            }
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+
+                if (line.isEmpty()) {
+                    continue;
+                }
+
+                String[] command;
+                try {
+                    command = Main.getObjectMapper().readValue(line, String[].class);
+                } catch (IOException e) {
+                    writeFailure(writer, MessageFormat.format("Invalid command: {0}", line));
+                    continue;
+                }
+
+                if (command.length == 1 && SHUTDOWN_COMMAND.equalsIgnoreCase(command[0])) {
+                    writeLine(writer, "end 0");
+                    shutdown();
+                    return;
+                }
+
+                execute(command, writer);
+
+            }
+
+        } catch (IOException e) {
+            serverErr.println(MessageFormat.format("Connection failed: {0}", e.getMessage()));
+        }
+
+    }
+
+    private void execute(String[] command, Writer writer) throws IOException {
+
+        synchronized (commandLock) {
+
+            PrintStream originalOut = System.out;
+            PrintStream originalErr = System.err;
+            LineForwardingStream forwardedOut = new LineForwardingStream("out ", writer);
+            LineForwardingStream forwardedErr = new LineForwardingStream("err ", writer);
+
+            String failureMessage = null;
+            try {
+                System.setOut(new PrintStream(forwardedOut, true, "UTF-8"));
+                System.setErr(new PrintStream(forwardedErr, true, "UTF-8"));
+                Main.run(command);
+            } catch (IOException | RuntimeException e) {
+                failureMessage = e.getMessage() != null ? e.getMessage() : e.toString();
+            } finally {
+                System.setOut(originalOut);
+                System.setErr(originalErr);
+                forwardedOut.finish();
+                forwardedErr.finish();
+            }
+
+            if (failureMessage == null) {
+                writeLine(writer, "end 0");
+            } else {
+                writeFailure(writer, failureMessage);
+            }
+
+        }
+
+    }
+
+    private static void writeFailure(Writer writer, String message) throws IOException {
+        synchronized (writer) {
+            for (String messageLine : message.split("\\r?\\n")) {
+                writer.write("err " + messageLine + "\n");
+            }
+            writeLine(writer, "end 1");
+        }
+    }
+
+    private static void writeLine(Writer writer, String line) throws IOException {
+        synchronized (writer) {
+            writer.write(line + "\n");
+            writer.flush();
+        }
+    }
+
+    /**
+     * Sends everything written to it to the client line by line, each line marked with the prefix of the stream.
+     */
+    private static class LineForwardingStream extends OutputStream {
+
+        private final String prefix;
+        private final Writer writer;
+        private final ByteArrayOutputStream lineBuffer = new ByteArrayOutputStream();
+
+        private LineForwardingStream(String prefix, Writer writer) {
+            this.prefix = prefix;
+            this.writer = writer;
+        }
+
+        @Override
+        public synchronized void write(int b) throws IOException {
+            if (b == '\n') {
+                forwardLine();
+            } else {
+                lineBuffer.write(b);
+            }
+        }
+
+        private synchronized void finish() throws IOException {
+            if (lineBuffer.size() > 0) {
+                forwardLine();
+            }
+        }
+
+        private void forwardLine() throws IOException {
+
+            String line = new String(lineBuffer.toByteArray(), StandardCharsets.UTF_8);
+            if (line.endsWith("\r")) {
+                line = line.substring(0, line.length() - 1);
+            }
+            lineBuffer.reset();
+
+            writeLine(writer, prefix + line);
+
+        }
+
+    }
+
+}
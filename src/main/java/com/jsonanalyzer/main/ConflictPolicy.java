@@ -0,0 +1,31 @@
+package com.jsonanalyzer.main;
+
+import java.text.MessageFormat;
+import java.util.Arrays;
+
+public enum ConflictPolicy {
+
+    LAST_WINS("last"),
+    FIRST_WINS("first"),
+    FAIL("fail");
+
+    private final String name;
+
+    ConflictPolicy(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static ConflictPolicy fromName(String name) {
+        return Arrays.stream(values())
+                .filter(policy -> policy.getName().equalsIgnoreCase(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(
+                        MessageFormat.format("Unknown conflict policy: {0}, choose one of: last, first, fail", name)
+                ));
+    }
+
+}
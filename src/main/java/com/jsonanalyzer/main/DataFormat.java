@@ -0,0 +1,186 @@
+package com.jsonanalyzer.main;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Format of the result files, and of the input files as detected by their content. NDJSON has one
+ * {@code {"key": ..., "value": ...}} record of a flattened entry per line, so it can be streamed line by line;
+ * Smile and CBOR are binary JSON which is smaller and faster to parse than the text.
+ */
+public enum DataFormat {
+
+    PRETTY("pretty", ".json"),
+    COMPACT("compact", ".json"),
+    NDJSON("ndjson", ".ndjson"),
+    SMILE("smile", ".smile"),
+    CBOR("cbor", ".cbor");
+
+    public static final String RECORD_KEY_FIELD = "key";
+    public static final String RECORD_VALUE_FIELD = "value";
+
+    private static final String[] KNOWN_EXTENSIONS = {".json", ".ndjson", ".jsonl", ".smile", ".cbor"};
+
+    private final String name;
+    private final String fileExtension;
+
+    DataFormat(String name, String fileExtension) {
+        this.name = name;
+        this.fileExtension = fileExtension;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getFileExtension() {
+        return fileExtension;
+    }
+
+    public static DataFormat fromName(String name) {
+        return Arrays.stream(values())
+                .filter(format -> format.getName().equalsIgnoreCase(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(
+                        MessageFormat.format("Unknown format: {0}, choose one of: pretty, compact, ndjson, smile, cbor", name)
+                ));
+    }
+
+    /**
+     * NDJSON is told by the extension, Smile and CBOR by their first bytes, anything else is read as JSON.
+     */
+    public static DataFormat detect(Path filePath) throws IOException {
+
+        String fileName = filePath.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (fileName.endsWith(".ndjson") || fileName.endsWith(".jsonl")) {
+            return NDJSON;
+        }
+
+        byte[] header = new byte[3];
+        int headerLength = 0;
+        try (InputStream inputStream = Files.newInputStream(filePath)) {
+            int readCount;
+            while (headerLength < header.length
+                    && (readCount = inputStream.read(header, headerLength, header.length - headerLength)) > 0) {
+                headerLength += readCount;
+            }
+        }
+
+        if (headerLength == 3 && header[0] == ':' && header[1] == ')' && header[2] == '\n') {
+            return SMILE;
+        }
+
+        // a map or the self-describing tag, none of which can start a JSON text in any of its encodings
+        int firstByte = headerLength > 0 ? header[0] & 0xFF : -1;
+        if (firstByte >= 0xA0 && firstByte <= 0xBF
+                || headerLength == 3 && firstByte == 0xD9 && (header[1] & 0xFF) == 0xD9 && (header[2] & 0xFF) == 0xF7) {
+            return CBOR;
+        }
+
+        return PRETTY;
+
+    }
+
+    /**
+     * Parser of the file in its detected format. For NDJSON it reads the records one after another as root values.
+     */
+    public static JsonParser createParser(ObjectReader reader, Path filePath) throws IOException {
+        return detect(filePath).createFormatParser(reader, filePath);
+    }
+
+    /**
+     * Same as {@link #createParser}, for the callers which need the nesting of the keys, which NDJSON doesn't keep.
+     */
+    public static JsonParser createNestedParser(ObjectReader reader, Path filePath) throws IOException {
+        DataFormat format = detect(filePath);
+        if (format == NDJSON) {
+            throw new IllegalArgumentException(
+                    MessageFormat.format("NDJSON file has no nesting of the keys, it can't be used here: {0}", filePath)
+            );
+        }
+        return format.createFormatParser(reader, filePath);
+    }
+
+    public JsonParser createFormatParser(ObjectReader reader, Path filePath) throws IOException {
+        switch (this) {
+            case SMILE:
+                return BinaryMappers.SMILE.createParser(filePath.toFile());
+            case CBOR:
+                return BinaryMappers.CBOR.createParser(filePath.toFile());
+            default:
+                return reader.createParser(filePath.toFile());
+        }
+    }
+
+    /**
+     * The generator of the JSON formats comes from the passed mapper (with its features),
+     * the binary ones have their own mappers, so that the trees and objects can still be written by them.
+     * JSON is written by a char-based generator, as the byte-based one of this Jackson version escapes the chars
+     * outside of the basic plane (like emojis) into surrogate pairs instead of writing their UTF-8 bytes.
+     */
+    public JsonGenerator createGenerator(ObjectMapper mapper, OutputStream outputStream) throws IOException {
+
+        JsonGenerator generator;
+        switch (this) {
+            case SMILE:
+                generator = BinaryMappers.SMILE.getFactory().createGenerator(outputStream);
+                break;
+            case CBOR:
+                generator = BinaryMappers.CBOR.getFactory().createGenerator(outputStream);
+                break;
+            default:
+                generator = mapper.getFactory().createGenerator(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        }
+
+        if (this == PRETTY) {
+            generator.setPrettyPrinter(new DefaultPrettyPrinter());
+        } else if (this == NDJSON) {
+            generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+        }
+
+        return generator;
+
+    }
+
+    public static boolean hasKnownExtension(String fileName) {
+        return getKnownExtension(fileName) != null;
+    }
+
+    /**
+     * Gives the file name without its extension if it's one of the formats, {@code "en.smile"} gives {@code "en"}.
+     */
+    public static String removeKnownExtension(String fileName) {
+        String extension = getKnownExtension(fileName);
+        return extension == null ? fileName : fileName.substring(0, fileName.length() - extension.length());
+    }
+
+    private static String getKnownExtension(String fileName) {
+        String lowerCaseFileName = fileName.toLowerCase(Locale.ROOT);
+        return Arrays.stream(KNOWN_EXTENSIONS).filter(lowerCaseFileName::endsWith).findFirst().orElse(null);
+    }
+
+    private static final class BinaryMappers {
+
+        private static final ObjectMapper SMILE = new ObjectMapper(new SmileFactory());
+        private static final ObjectMapper CBOR = new ObjectMapper(new CBORFactory());
+
+    }
+
+}
@@ -0,0 +1,425 @@
+package com.jsonanalyzer.main;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sorts flattened entries within a fixed memory budget: once the budget is reached, the buffered entries
+ * are spilled as a sorted run (key, serialized value) to a temporary file, and all the runs are k-way merged
+ * at the end. Until then the values stay nodes, so an input within the budget is never serialized. For the same key the entry that was added last wins, just like with {@code Map.put()}.
+ * The sorted entries can be read back through a cursor, those which are still buffered are read straight from memory,
+ * after {@link #flush()} they're kept on the disk only.
+ * <p>
+ * Only a bounded number of runs is merged at once, so a huge input with a small budget doesn't need a file handle
+ * per run: when there are more runs, the consecutive ones are merged into bigger runs first, pass by pass.
+ */
+public class ExternalSorter implements Closeable {
+
+    // rough per-entry footprint of the buffer: tree node, label String and value node headers
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+    private static final int VALUE_NODE_BYTES = 32;
+
+    public static final int DEFAULT_MAX_MERGED_RUNS = 64;
+
+    private final ObjectMapper mapper;
+    private final long memoryBudgetBytes;
+    private final Path spillDirectory;
+    private final int maxMergedRuns;
+    private final List<Path> runFilePaths = new ArrayList<>();
+    private int createdRunFilesCount = 0;
+
+    private RadixTreeMap<JsonNode> buffer = new RadixTreeMap<>();
+    private long bufferedBytes = 0;
+    private Path tempDirectory;
+
+    public ExternalSorter(ObjectMapper mapper, long memoryBudgetBytes) {
+        this(mapper, memoryBudgetBytes, null, DEFAULT_MAX_MERGED_RUNS);
+    }
+
+    /**
+     * The runs are spilled into a temporary directory created under the passed one (the system temporary directory
+     * if it's null), and at most {@code maxMergedRuns} of them are open at once.
+     */
+    public ExternalSorter(ObjectMapper mapper, long memoryBudgetBytes, Path spillDirectory, int maxMergedRuns) {
+        if (memoryBudgetBytes <= 0) {
+            throw new IllegalArgumentException(MessageFormat.format("Invalid memory budget: {0}", memoryBudgetBytes));
+        }
+        if (maxMergedRuns < 2) {
+            throw new IllegalArgumentException(MessageFormat.format("Invalid number of merged runs: {0}", maxMergedRuns));
+        }
+        this.mapper = mapper;
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.spillDirectory = spillDirectory;
+        this.maxMergedRuns = maxMergedRuns;
+    }
+
+    public void add(String key, JsonNode value) throws IOException {
+
+        JsonNode replacedValue = buffer.put(key, value);
+
+        bufferedBytes += estimateBytes(value);
+        if (replacedValue == null) {
+            bufferedBytes += 2L * key.length() + ENTRY_OVERHEAD_BYTES;
+        } else {
+            bufferedBytes -= estimateBytes(replacedValue);
+        }
+
+        if (bufferedBytes >= memoryBudgetBytes) {
+            spill();
+        }
+
+    }
+
+    /**
+     * Budget of each of the sorters working at the same time, when none is given: a quarter of the heap shared by them,
+     * so the memory doesn't grow with the size of the inputs.
+     */
+    public static long getDefaultMemoryBudgetBytes(int concurrentSortersCount) {
+        return Math.max(1, Runtime.getRuntime().maxMemory() / 4 / Math.max(1, concurrentSortersCount));
+    }
+
+    public int getRunsCount() {
+        return runFilePaths.size();
+    }
+
+    /**
+     * Estimated bytes of the entries which are sorted in memory and not spilled yet.
+     */
+    public long getBufferedBytes() {
+        return bufferedBytes;
+    }
+
+    public void forEachSorted(JsonFlattener.EntryConsumer consumer) throws IOException {
+        try (KWayMerger.EntryCursor<JsonNode> cursor = openSortedCursor()) {
+            while (cursor.next()) {
+                consumer.accept(cursor.getKey(), cursor.getValue());
+            }
+        }
+    }
+
+    public KWayMerger.EntryCursor<JsonNode> openSortedCursor() throws IOException {
+
+        if (runFilePaths.isEmpty()) {
+            return new BufferCursor(buffer);
+        }
+
+        mergeRunsWhileTooMany();
+
+        List<KWayMerger.EntryCursor<byte[]>> runCursors = openRunCursors(runFilePaths);
+        runCursors.add(new BufferRunCursor(buffer, mapper));
+
+        KWayMerger<byte[]> merger = new KWayMerger<>(runCursors);
+
+        return new KWayMerger.EntryCursor<JsonNode>() {
+
+            private String key;
+            private JsonNode value;
+
+            @Override
+            public boolean next() throws IOException {
+
+                if (!merger.nextGroup()) {
+                    return false;
+                }
+
+                // among the equal keys the one from the latest run is the last one added
+                key = merger.getKey();
+                value = mapper.readTree(merger.getValue(merger.getGroupSize() - 1));
+
+                return true;
+
+            }
+
+            @Override
+            public String getKey() {
+                return key;
+            }
+
+            @Override
+            public JsonNode getValue() {
+                return value;
+            }
+
+            @Override
+            public void close() throws IOException {
+                merger.close();
+            }
+
+        };
+
+    }
+
+    public void flush() throws IOException {
+        if (!buffer.isEmpty()) {
+            spill();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        buffer = new RadixTreeMap<>();
+        bufferedBytes = 0;
+
+        for (Path runFilePath : runFilePaths) {
+            Files.deleteIfExists(runFilePath);
+        }
+        runFilePaths.clear();
+
+        if (tempDirectory != null) {
+            Files.deleteIfExists(tempDirectory);
+            tempDirectory = null;
+        }
+
+    }
+
+    private void spill() throws IOException {
+
+        Path runFilePath = createRunFilePath();
+
+        try (DataOutputStream output = openRunOutput(runFilePath)) {
+            for (Map.Entry<String, JsonNode> entry : buffer.entrySet()) {
+                writeRunEntry(output, entry.getKey(), mapper.writeValueAsBytes(entry.getValue()));
+            }
+        }
+
+        runFilePaths.add(runFilePath);
+        buffer = new RadixTreeMap<>();
+        bufferedBytes = 0;
+
+    }
+
+    private void mergeRunsWhileTooMany() throws IOException {
+
+        while (runFilePaths.size() > maxMergedRuns) {
+
+            // the merged runs replace the consecutive ones in place, so the later runs still win for the same key
+            List<Path> mergedRunFilePaths = new ArrayList<>();
+            for (int from = 0; from < runFilePaths.size(); from += maxMergedRuns) {
+                List<Path> runsToMerge = runFilePaths.subList(from, Math.min(from + maxMergedRuns, runFilePaths.size()));
+                mergedRunFilePaths.add(runsToMerge.size() == 1 ? runsToMerge.get(0) : mergeRunFiles(runsToMerge));
+            }
+
+            runFilePaths.clear();
+            runFilePaths.addAll(mergedRunFilePaths);
+
+        }
+
+    }
+
+    private Path mergeRunFiles(List<Path> runsToMerge) throws IOException {
+
+        Path mergedRunFilePath = createRunFilePath();
+
+        try (KWayMerger<byte[]> merger = new KWayMerger<>(openRunCursors(runsToMerge));
+             DataOutputStream output = openRunOutput(mergedRunFilePath)) {
+            while (merger.nextGroup()) {
+                writeRunEntry(output, merger.getKey(), merger.getValue(merger.getGroupSize() - 1));
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(mergedRunFilePath);
+            throw e;
+        }
+
+        for (Path runFilePath : runsToMerge) {
+            Files.deleteIfExists(runFilePath);
+        }
+
+        return mergedRunFilePath;
+
+    }
+
+    private static long estimateBytes(JsonNode value) {
+        return VALUE_NODE_BYTES + 2L * (value.isTextual() ? value.textValue().length() : value.toString().length());
+    }
+
+    private Path createRunFilePath() throws IOException {
+
+        if (tempDirectory == null) {
+            if (spillDirectory != null) {
+                Files.createDirectories(spillDirectory);
+                tempDirectory = Files.createTempDirectory(spillDirectory, "json-analyzer-runs");
+            } else {
+                tempDirectory = Files.createTempDirectory("json-analyzer-runs");
+            }
+        }
+
+        return tempDirectory.resolve(MessageFormat.format("run-{0}.bin", createdRunFilesCount++));
+
+    }
+
+    private static DataOutputStream openRunOutput(Path runFilePath) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(runFilePath)));
+    }
+
+    private static void writeRunEntry(DataOutputStream output, String key, byte[] value) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(keyBytes.length);
+        output.write(keyBytes);
+        output.writeInt(value.length);
+        output.write(value);
+    }
+
+    private static List<KWayMerger.EntryCursor<byte[]>> openRunCursors(List<Path> runFilePaths) throws IOException {
+
+        List<KWayMerger.EntryCursor<byte[]>> runCursors = new ArrayList<>();
+        try {
+            for (Path runFilePath : runFilePaths) {
+                runCursors.add(new FileRunCursor(runFilePath));
+            }
+        } catch (IOException e) {
+            for (KWayMerger.EntryCursor<byte[]> runCursor : runCursors) {
+                runCursor.close();
+            }
+            throw e;
+        }
+
+        return runCursors;
+
+    }
+
+    private abstract static class RunCursor implements KWayMerger.EntryCursor<byte[]> {
+
+        protected String key;
+        protected byte[] value;
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public byte[] getValue() {
+            return value;
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+
+    }
+
+    private static class FileRunCursor extends RunCursor {
+
+        private final DataInputStream input;
+
+        FileRunCursor(Path runFilePath) throws IOException {
+            this.input = new DataInputStream(new BufferedInputStream(Files.newInputStream(runFilePath)));
+        }
+
+        @Override
+        public boolean next() throws IOException {
+
+            int keyLength;
+            try {
+                keyLength = input.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+
+            byte[] keyBytes = new byte[keyLength];
+            input.readFully(keyBytes);
+            key = new String(keyBytes, StandardCharsets.UTF_8);
+
+            value = new byte[input.readInt()];
+            input.readFully(value);
+
+            return true;
+
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+
+    }
+
+    /**
+     * The buffered entries merged with the spilled runs, serialized one by one like the runs are.
+     */
+    private static class BufferRunCursor extends RunCursor {
+
+        private final Iterator<Map.Entry<String, JsonNode>> iterator;
+        private final ObjectMapper mapper;
+
+        BufferRunCursor(RadixTreeMap<JsonNode> buffer, ObjectMapper mapper) {
+            this.iterator = buffer.entrySet().iterator();
+            this.mapper = mapper;
+        }
+
+        @Override
+        public boolean next() throws IOException {
+
+            if (!iterator.hasNext()) {
+                return false;
+            }
+
+            Map.Entry<String, JsonNode> entry = iterator.next();
+            key = entry.getKey();
+            value = mapper.writeValueAsBytes(entry.getValue());
+
+            return true;
+
+        }
+
+    }
+
+    /**
+     * The buffered entries as they are, when nothing was spilled.
+     */
+    private static class BufferCursor implements KWayMerger.EntryCursor<JsonNode> {
+
+        private final Iterator<Map.Entry<String, JsonNode>> iterator;
+        private Map.Entry<String, JsonNode> entry;
+
+        BufferCursor(RadixTreeMap<JsonNode> buffer) {
+            this.iterator = buffer.entrySet().iterator();
+        }
+
+        @Override
+        public boolean next() {
+
+            if (!iterator.hasNext()) {
+                return false;
+            }
+
+            entry = iterator.next();
+
+            return true;
+
+        }
+
+        @Override
+        public String getKey() {
+            return entry.getKey();
+        }
+
+        @Override
+        public JsonNode getValue() {
+            return entry.getValue();
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+}
@@ -0,0 +1,152 @@
+package com.jsonanalyzer.main;
+
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the same task for each of the files, either one by one or on a bounded number of worker threads.
+ * Results always come back in the order of the passed paths, failures are reported per file.
+ * <p>
+ * Inputs can be thousands of tiny files, so there's no queued task & future per file: each worker takes the index
+ * of the next file from a shared counter. The workers are virtual threads when the JVM has them (Java 21+),
+ * so a large number of them is cheap for the I/O-bound files, otherwise they're daemon platform threads.
+ */
+public class FileTaskRunner {
+
+    @FunctionalInterface
+    public interface FileTask<T> {
+        T run(String filePath) throws IOException;
+    }
+
+    private static final ThreadFactory WORKER_THREAD_FACTORY = createWorkerThreadFactory();
+
+    private final int threads;
+
+    public FileTaskRunner(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException(MessageFormat.format("Invalid number of threads: {0}", threads));
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Runner for the files found in the directories and globs when the number of threads isn't given: the files are
+     * mostly small and I/O-bound, so there are more workers than processors, a few per processor for the virtual
+     * threads and twice the processors for the platform ones, which cost more each.
+     */
+    public static FileTaskRunner forManyFiles() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        return new FileTaskRunner(WORKER_THREAD_FACTORY instanceof PlatformThreadFactory ? 2 * processors : 4 * processors);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> Map<String, T> runForEachFile(Collection<String> filePaths, FileTask<T> task) {
+
+        List<String> filePathsList = new ArrayList<>(filePaths);
+        Object[] results = new Object[filePathsList.size()];
+        Throwable[] failures = new Throwable[filePathsList.size()];
+
+        if (threads == 1 || filePathsList.size() < 2) {
+            for (int i = 0; i < filePathsList.size(); i++) {
+                try {
+                    results[i] = task.run(filePathsList.get(i));
+                } catch (IOException | RuntimeException e) {
+                    failures[i] = e;
+                }
+            }
+        } else {
+            AtomicInteger nextFileIndex = new AtomicInteger();
+            Runnable worker = () -> {
+                int i;
+                while ((i = nextFileIndex.getAndIncrement()) < filePathsList.size()) {
+                    try {
+                        results[i] = task.run(filePathsList.get(i));
+                    } catch (Throwable e) {
+                        failures[i] = e;
+                    }
+                }
+            };
+            List<Thread> workers = new ArrayList<>();
+            for (int i = 0; i < Math.min(threads, filePathsList.size()); i++) {
+                Thread workerThread = WORKER_THREAD_FACTORY.newThread(worker);
+                workers.add(workerThread);
+                workerThread.start();
+            }
+            try {
+                for (Thread workerThread : workers) {
+                    workerThread.join();
+                }
+            } catch (InterruptedException e) {
+                // the files not taken yet are skipped, the ones being processed are interrupted
+                nextFileIndex.set(filePathsList.size());
+                workers.forEach(Thread::interrupt);
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while processing files", e);
+            }
+        }
+
+        Map<String, T> resultsByFile = new LinkedHashMap<>();
+        Map<String, Throwable> failuresByFile = new LinkedHashMap<>();
+        for (int i = 0; i < filePathsList.size(); i++) {
+            if (failures[i] != null) {
+                failuresByFile.put(filePathsList.get(i), failures[i]);
+            } else {
+                resultsByFile.put(filePathsList.get(i), (T) results[i]);
+            }
+        }
+
+        if (!failuresByFile.isEmpty()) {
+            failuresByFile.forEach((filePath, cause) -> System.err.println(
+                    MessageFormat.format("Failed to process \"{0}\": {1}", filePath, cause)
+            ));
+            RuntimeException exception = new RuntimeException(
+                    MessageFormat.format("{0} of {1} file(s) failed", failuresByFile.size(), filePathsList.size())
+            );
+            failuresByFile.values().forEach(exception::addSuppressed);
+            throw exception;
+        }
+
+        return resultsByFile;
+
+    }
+
+    /**
+     * The build targets Java 8, so the virtual threads builder is looked up reflectively.
+     */
+    private static ThreadFactory createWorkerThreadFactory() {
+        try {
+            Object virtualThreadBuilder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builderClass.getMethod("name", String.class, long.class).invoke(virtualThreadBuilder, "file-worker-", 1L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(virtualThreadBuilder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // before Java 21 (or with the preview disabled on 19-20)
+            return new PlatformThreadFactory();
+        }
+    }
+
+    private static final class PlatformThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadsCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "file-worker-" + threadsCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+}
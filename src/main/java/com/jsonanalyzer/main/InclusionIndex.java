@@ -0,0 +1,289 @@
+package com.jsonanalyzer.main;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * On-disk inverted index from the flattened key to the bitmap of the named sets containing it.
+ * Keys are stored sorted by their UTF-8 bytes, so the index is memory-mapped and binary-searched in place
+ * when querying, without parsing any of the set files again.
+ * <p>
+ * Layout: header (magic, version, sets with their file size & modification time, keys count, bitmap words),
+ * then {@code int} offsets of the keys, {@code long} bitmap words of each key and the UTF-8 bytes of all the keys.
+ */
+public class InclusionIndex implements Closeable {
+
+    private static final int MAGIC = 0x4A41_4958;
+    private static final int VERSION = 1;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    private final List<String> setNames = new ArrayList<>();
+    private final List<String> setFilePaths = new ArrayList<>();
+    private final List<long[]> setFileStamps = new ArrayList<>();
+
+    private final int keysCount;
+    private final int bitmapWords;
+    private final boolean hasPrefixPatterns;
+    private final int offsetsPosition;
+    private final int bitmapsPosition;
+    private final int keysPosition;
+
+    private InclusionIndex(Path indexFilePath) throws IOException {
+
+        channel = FileChannel.open(indexFilePath, StandardOpenOption.READ);
+
+        try {
+
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(MessageFormat.format("Index file is too large: {0}", indexFilePath));
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException(MessageFormat.format("Not an index file or unsupported version: {0}", indexFilePath));
+            }
+
+            int setsCount = buffer.getInt();
+            for (int i = 0; i < setsCount; i++) {
+                setNames.add(readString(buffer));
+                setFilePaths.add(readString(buffer));
+                setFileStamps.add(new long[] {buffer.getLong(), buffer.getLong()});
+            }
+
+            keysCount = buffer.getInt();
+            bitmapWords = buffer.getInt();
+            hasPrefixPatterns = buffer.get() != 0;
+
+            offsetsPosition = buffer.position();
+            bitmapsPosition = offsetsPosition + Integer.BYTES * (keysCount + 1);
+            keysPosition = bitmapsPosition + Long.BYTES * keysCount * bitmapWords;
+
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+
+    }
+
+    public static InclusionIndex open(Path indexFilePath) throws IOException {
+        return new InclusionIndex(indexFilePath);
+    }
+
+    public static void write(Path indexFilePath, List<String> setNames, List<String> setFilePaths,
+                             List<? extends Collection<String>> setKeys) throws IOException {
+
+        int bitmapWords = Math.max(1, (setNames.size() + 63) / 64);
+
+        // sorting by the UTF-8 bytes, so the index can be searched without decoding the keys
+        Map<byte[], long[]> bitmapsByKey = new TreeMap<>(InclusionIndex::compareBytes);
+        boolean hasPrefixPatterns = false;
+
+        for (int setIndex = 0; setIndex < setKeys.size(); setIndex++) {
+            for (String key : setKeys.get(setIndex)) {
+                long[] bitmap = bitmapsByKey.computeIfAbsent(key.getBytes(StandardCharsets.UTF_8), k -> new long[bitmapWords]);
+                bitmap[setIndex / 64] |= 1L << (setIndex % 64);
+                hasPrefixPatterns |= isPrefixPattern(key);
+            }
+        }
+
+        boolean finalHasPrefixPatterns = hasPrefixPatterns;
+        JsonEntriesWriter.writeContent(indexFilePath, outputStream -> {
+
+            DataOutputStream output = new DataOutputStream(outputStream);
+
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+
+            output.writeInt(setNames.size());
+            for (int i = 0; i < setNames.size(); i++) {
+                Path setFilePath = Paths.get(setFilePaths.get(i)).toAbsolutePath();
+                writeString(output, setNames.get(i));
+                writeString(output, setFilePath.toString());
+                output.writeLong(Files.size(setFilePath));
+                output.writeLong(Files.getLastModifiedTime(setFilePath).toMillis());
+            }
+
+            output.writeInt(bitmapsByKey.size());
+            output.writeInt(bitmapWords);
+            output.writeByte(finalHasPrefixPatterns ? 1 : 0);
+
+            int offset = 0;
+            for (byte[] key : bitmapsByKey.keySet()) {
+                output.writeInt(offset);
+                offset += key.length;
+            }
+            output.writeInt(offset);
+
+            for (long[] bitmap : bitmapsByKey.values()) {
+                for (long word : bitmap) {
+                    output.writeLong(word);
+                }
+            }
+
+            for (byte[] key : bitmapsByKey.keySet()) {
+                output.write(key);
+            }
+
+            output.flush();
+
+        });
+
+    }
+
+    public List<String> getSetNames() {
+        return setNames;
+    }
+
+    public List<String> getOutdatedSetNames() throws IOException {
+
+        List<String> outdatedSetNames = new ArrayList<>();
+
+        for (int i = 0; i < setNames.size(); i++) {
+            Path setFilePath = Paths.get(setFilePaths.get(i));
+            if (!Files.exists(setFilePath)
+                    || Files.size(setFilePath) != setFileStamps.get(i)[0]
+                    || Files.getLastModifiedTime(setFilePath).toMillis() != setFileStamps.get(i)[1]) {
+                outdatedSetNames.add(setNames.get(i));
+            }
+        }
+
+        return outdatedSetNames;
+
+    }
+
+    /**
+     * Gives the names of all the sets containing the key, either as is or under one of the "a.b.*" patterns.
+     */
+    public List<String> findSetNames(String key) {
+
+        long[] bitmap = new long[bitmapWords];
+        boolean isFound = orBitmap(key, bitmap);
+
+        if (hasPrefixPatterns) {
+            for (int i = key.indexOf('.'); i >= 0; i = key.indexOf('.', i + 1)) {
+                isFound |= orBitmap(key.substring(0, i + 1) + "*", bitmap);
+            }
+        }
+
+        List<String> foundSetNames = new ArrayList<>();
+        if (isFound) {
+            for (int setIndex = 0; setIndex < setNames.size(); setIndex++) {
+                if ((bitmap[setIndex / 64] & (1L << (setIndex % 64))) != 0) {
+                    foundSetNames.add(setNames.get(setIndex));
+                }
+            }
+        }
+
+        return foundSetNames;
+
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private boolean orBitmap(String key, long[] bitmap) {
+
+        int keyIndex = findKeyIndex(key.getBytes(StandardCharsets.UTF_8));
+        if (keyIndex < 0) {
+            return false;
+        }
+
+        int bitmapPosition = bitmapsPosition + Long.BYTES * keyIndex * bitmapWords;
+        for (int i = 0; i < bitmapWords; i++) {
+            bitmap[i] |= buffer.getLong(bitmapPosition + Long.BYTES * i);
+        }
+
+        return true;
+
+    }
+
+    private int findKeyIndex(byte[] key) {
+
+        int low = 0;
+        int high = keysCount - 1;
+
+        while (low <= high) {
+
+            int middle = (low + high) >>> 1;
+            int keyStart = buffer.getInt(offsetsPosition + Integer.BYTES * middle);
+            int keyEnd = buffer.getInt(offsetsPosition + Integer.BYTES * (middle + 1));
+            int comparisonResult = compareWithStoredKey(key, keysPosition + keyStart, keyEnd - keyStart);
+
+            if (comparisonResult > 0) {
+                low = middle + 1;
+            } else if (comparisonResult < 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+
+        }
+
+        return -1;
+
+    }
+
+    private int compareWithStoredKey(byte[] key, int storedKeyPosition, int storedKeyLength) {
+
+        int length = Math.min(key.length, storedKeyLength);
+        for (int i = 0; i < length; i++) {
+            int difference = (key[i] & 0xFF) - (buffer.get(storedKeyPosition + i) & 0xFF);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+
+        return key.length - storedKeyLength;
+
+    }
+
+    private static boolean isPrefixPattern(String key) {
+        return key.endsWith(".*");
+    }
+
+    private static int compareBytes(byte[] first, byte[] second) {
+
+        int length = Math.min(first.length, second.length);
+        for (int i = 0; i < length; i++) {
+            int difference = (first[i] & 0xFF) - (second[i] & 0xFF);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+
+        return first.length - second.length;
+
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
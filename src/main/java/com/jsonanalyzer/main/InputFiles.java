@@ -0,0 +1,190 @@
+package com.jsonanalyzer.main;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Expands the file arguments of the commands: a directory stands for all the JSON files under it (recursively,
+ * in any of the {@link DataFormat}s), a glob like {@code features/**}{@code /en.json} for all the files matching it,
+ * and any other argument is a file path as it is. The files which the run itself writes, like {@code "en (sorted).json"}
+ * next to {@code "en.json"} or its summary, are never picked up from the directories and globs, each skipped one is logged.
+ */
+public final class InputFiles {
+
+    private static final String GLOB_SPECIAL_CHARS = "*?[{";
+
+    private InputFiles() {
+    }
+
+    public static boolean isExpandable(String argument) {
+        return isGlob(argument) || Files.isDirectory(Paths.get(argument));
+    }
+
+    /**
+     * Gives the files of all the arguments, in the order of the arguments (the files of each directory or glob
+     * are sorted), each file only once.
+     */
+    public static List<String> expand(String... arguments) throws IOException {
+        return expand(Collections.emptySet(), filePath -> Collections.emptyList(), arguments);
+    }
+
+    /**
+     * Same as {@link #expand(String...)}, skipping the files written by the run which are found in the directories
+     * and globs: its output files (absolute & normalized paths) and the result files of each of the files found.
+     */
+    public static List<String> expand(Set<Path> outputFilesPaths, Function<Path, List<Path>> resultFilesOf,
+                                      String... arguments) throws IOException {
+
+        Set<String> filesPaths = new LinkedHashSet<>();
+        for (String argument : arguments) {
+            filesPaths.addAll(expandWithRelativePaths(argument, outputFilesPaths, resultFilesOf).values());
+        }
+
+        return new ArrayList<>(filesPaths);
+
+    }
+
+    /**
+     * Gives the files of the argument by their paths relative to its base directory (see {@link #getBaseDirectory}),
+     * with "/" as the separator, so the files of two directories can be matched with each other.
+     */
+    public static Map<String, String> expandWithRelativePaths(String argument) throws IOException {
+        return expandWithRelativePaths(argument, Collections.emptySet(), filePath -> Collections.emptyList());
+    }
+
+    public static Map<String, String> expandWithRelativePaths(String argument, Set<Path> outputFilesPaths,
+                                                              Function<Path, List<Path>> resultFilesOf) throws IOException {
+
+        Map<String, String> filesByRelativePath = new LinkedHashMap<>();
+
+        if (!isExpandable(argument)) {
+            filesByRelativePath.put(Paths.get(argument).getFileName().toString(), argument);
+            return filesByRelativePath;
+        }
+
+        Path baseDirectory = getBaseDirectory(argument);
+        PathMatcher matcher;
+        int maxDepth;
+        if (isGlob(argument)) {
+            String pattern = getGlobPattern(argument);
+            matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+            // without "**" the pattern can't match anything deeper than its own segments
+            maxDepth = pattern.contains("**") ? Integer.MAX_VALUE : pattern.split("/").length;
+        } else {
+            matcher = relativePath -> DataFormat.hasKnownExtension(relativePath.getFileName().toString());
+            maxDepth = Integer.MAX_VALUE;
+        }
+
+        List<Path> filesPaths;
+        try (Stream<Path> walkedPaths = Files.walk(baseDirectory, maxDepth)) {
+            filesPaths = walkedPaths.filter(filePath -> !filePath.equals(baseDirectory))
+                    .filter(filePath -> matcher.matches(baseDirectory.relativize(filePath)))
+                    .filter(Files::isRegularFile)
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        // the result files are written next to their input files, so they can only be found under the same argument
+        Set<Path> writtenFilesPaths = new HashSet<>(outputFilesPaths);
+        for (Path filePath : filesPaths) {
+            for (Path resultFilePath : resultFilesOf.apply(filePath)) {
+                writtenFilesPaths.add(resultFilePath.toAbsolutePath().normalize());
+            }
+        }
+        filesPaths.removeIf(filePath -> {
+            if (!writtenFilesPaths.contains(filePath.toAbsolutePath().normalize())) {
+                return false;
+            }
+            System.out.println(MessageFormat.format("Skipping \"{0}\", it''s written by this run", filePath));
+            return true;
+        });
+
+        if (filesPaths.isEmpty()) {
+            throw new IllegalArgumentException(MessageFormat.format("No JSON files found: {0}", argument));
+        }
+
+        for (Path filePath : filesPaths) {
+            String relativePath = baseDirectory.relativize(filePath).toString();
+            filesByRelativePath.put(relativePath.replace(filePath.getFileSystem().getSeparator(), "/"), filePath.toString());
+        }
+
+        return filesByRelativePath;
+
+    }
+
+    /**
+     * The directory itself for a directory, the part of a glob before its first segment with special chars,
+     * or the parent directory for a file (the working directory if there's none).
+     */
+    public static Path getBaseDirectory(String argument) {
+
+        if (isGlob(argument)) {
+            String[] segments = argument.split("[/\\\\]", -1);
+            StringBuilder baseDirectory = new StringBuilder();
+            for (String segment : segments) {
+                if (isGlob(segment)) {
+                    break;
+                }
+                baseDirectory.append(segment).append('/');
+            }
+            return baseDirectory.length() == 0 ? Paths.get("") : Paths.get(baseDirectory.toString());
+        }
+
+        Path path = Paths.get(argument);
+        if (Files.isDirectory(path)) {
+            return path;
+        }
+
+        return path.getParent() == null ? Paths.get("") : path.getParent();
+
+    }
+
+    private static String getGlobPattern(String argument) {
+
+        String[] segments = argument.split("[/\\\\]", -1);
+        int firstGlobSegment = 0;
+        while (!isGlob(segments[firstGlobSegment])) {
+            firstGlobSegment++;
+        }
+
+        StringBuilder pattern = new StringBuilder();
+        for (int i = firstGlobSegment; i < segments.length; i++) {
+            if (pattern.length() > 0) {
+                pattern.append('/');
+            }
+            pattern.append(segments[i]);
+        }
+
+        return pattern.toString();
+
+    }
+
+    private static boolean isGlob(String argument) {
+        for (int i = 0; i < argument.length(); i++) {
+            if (GLOB_SPECIAL_CHARS.indexOf(argument.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
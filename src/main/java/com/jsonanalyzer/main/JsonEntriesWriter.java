@@ -0,0 +1,206 @@
+package com.jsonanalyzer.main;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Writes the entries of a JSON object one by one into a temporary file next to the target one,
+ * and then moves it in place, so nobody ever sees a half-written result file.
+ * In {@link DataFormat#NDJSON} each entry is a record line instead of a field of a single object.
+ */
+public class JsonEntriesWriter implements Closeable {
+
+    @FunctionalInterface
+    public interface ContentWriter {
+        void write(OutputStream outputStream) throws IOException;
+    }
+
+    private final Path targetFilePath;
+    private final Path tempFilePath;
+    private final FileChannel channel;
+    private final JsonGenerator generator;
+    private final boolean writingRecords;
+    private final boolean writingArenaBytes;
+
+    private boolean hasEntries = false;
+    private boolean committed = false;
+
+    private JsonEntriesWriter(ObjectMapper mapper, Path targetFilePath, DataFormat format) throws IOException {
+
+        this.targetFilePath = targetFilePath.toAbsolutePath();
+        this.tempFilePath = getTempFilePath(this.targetFilePath);
+        this.writingRecords = format == DataFormat.NDJSON;
+        // the JSON generators are char-based, and the CBOR one of this Jackson version ignores the offset
+        // of the UTF-8 bytes it's given, so only Smile gets the bytes of the arena as they are
+        this.writingArenaBytes = format == DataFormat.SMILE;
+
+        FileChannel tempFileChannel = FileChannel.open(tempFilePath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        try {
+            this.channel = tempFileChannel;
+            this.generator = format.createGenerator(mapper, Channels.newOutputStream(channel));
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            if (!writingRecords) {
+                this.generator.writeStartObject();
+            }
+        } catch (IOException | RuntimeException e) {
+            tempFileChannel.close();
+            Files.deleteIfExists(tempFilePath);
+            throw e;
+        }
+
+    }
+
+    public static JsonEntriesWriter open(ObjectMapper mapper, Path targetFilePath) throws IOException {
+        return open(mapper, targetFilePath, DataFormat.PRETTY);
+    }
+
+    public static JsonEntriesWriter open(ObjectMapper mapper, Path targetFilePath, DataFormat format) throws IOException {
+        return new JsonEntriesWriter(mapper, targetFilePath, format);
+    }
+
+    public static void writeEntries(ObjectMapper mapper, Path targetFilePath, Map<String, ?> entries) throws IOException {
+        writeEntries(mapper, targetFilePath, entries, DataFormat.PRETTY);
+    }
+
+    public static void writeEntries(ObjectMapper mapper, Path targetFilePath, Map<String, ?> entries,
+                                    DataFormat format) throws IOException {
+        try (JsonEntriesWriter writer = open(mapper, targetFilePath, format)) {
+            for (Map.Entry<String, ?> entry : entries.entrySet()) {
+                writer.writeEntry(entry.getKey(), entry.getValue());
+            }
+            writer.commit();
+        }
+    }
+
+    public static void writeContent(Path targetFilePath, byte[] content) throws IOException {
+        writeContent(targetFilePath, outputStream -> outputStream.write(content));
+    }
+
+    public static void writeContent(Path targetFilePath, ContentWriter contentWriter) throws IOException {
+
+        Path absoluteTargetFilePath = targetFilePath.toAbsolutePath();
+        Path tempFilePath = getTempFilePath(absoluteTargetFilePath);
+
+        try {
+            try (FileChannel channel = FileChannel.open(tempFilePath, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                OutputStream outputStream = new BufferedOutputStream(Channels.newOutputStream(channel)) {
+                    @Override
+                    public void close() throws IOException {
+                        // the channel still has to be synced, so closing by the content writer only flushes
+                        flush();
+                    }
+                };
+                contentWriter.write(outputStream);
+                outputStream.flush();
+                channel.force(true);
+            }
+            moveInPlace(tempFilePath, absoluteTargetFilePath);
+        } finally {
+            Files.deleteIfExists(tempFilePath);
+        }
+
+    }
+
+    public void writeEntry(String key, Object value) throws IOException {
+
+        startEntry(key);
+
+        if (value instanceof JsonNode) {
+            generator.writeTree((JsonNode) value);
+        } else if (value instanceof String) {
+            generator.writeString((String) value);
+        } else {
+            generator.writeObject(value);
+        }
+
+        endEntry();
+
+    }
+
+    public void writeEntry(String key, LeafValueArena arena, long reference) throws IOException {
+        startEntry(key);
+        if (writingArenaBytes) {
+            arena.write(reference, generator);
+        } else {
+            arena.writeChars(reference, generator);
+        }
+        endEntry();
+    }
+
+    public void commit() throws IOException {
+
+        if (!writingRecords) {
+            generator.writeEndObject();
+        } else if (hasEntries) {
+            // the records are only separated by the new lines, the last one ends with it too
+            generator.writeRaw('\n');
+        }
+        generator.close();
+        channel.force(true);
+        channel.close();
+
+        moveInPlace(tempFilePath, targetFilePath);
+        committed = true;
+
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!committed) {
+            try {
+                channel.close();
+            } finally {
+                Files.deleteIfExists(tempFilePath);
+            }
+        }
+    }
+
+    private void startEntry(String key) throws IOException {
+        if (writingRecords) {
+            generator.writeStartObject();
+            generator.writeStringField(DataFormat.RECORD_KEY_FIELD, key);
+            generator.writeFieldName(DataFormat.RECORD_VALUE_FIELD);
+        } else {
+            generator.writeFieldName(key);
+        }
+        hasEntries = true;
+    }
+
+    private void endEntry() throws IOException {
+        if (writingRecords) {
+            generator.writeEndObject();
+        }
+    }
+
+    private static Path getTempFilePath(Path targetFilePath) {
+        // unlike Files.createTempFile(), the file gets the usual permissions instead of owner-only ones
+        return targetFilePath.resolveSibling(
+                "." + targetFilePath.getFileName() + "." + UUID.randomUUID() + ".tmp"
+        );
+    }
+
+    private static void moveInPlace(Path sourceFilePath, Path targetFilePath) throws IOException {
+        try {
+            Files.move(sourceFilePath, targetFilePath,
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(sourceFilePath, targetFilePath, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+}
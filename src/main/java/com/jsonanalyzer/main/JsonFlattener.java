@@ -0,0 +1,248 @@
+package com.jsonanalyzer.main;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Flattens a JSON document into (dotted path, leaf value) pairs straight from the parser's token stream,
+ * without building the whole {@link JsonNode} tree first. Arrays are leaves, unless they're flattened too
+ * into the indexed paths, like {@code a.b[3].c} (see {@link KeyPath} for the escaping of the keys).
+ * The files can be in any of the {@link DataFormat}s, the NDJSON records are the flattened entries already.
+ */
+public class JsonFlattener {
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(String key, JsonNode value) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface KeyConsumer {
+        void accept(String key) throws IOException;
+    }
+
+    /**
+     * Gets the parser positioned at the first token of the leaf value, which has to be consumed by it.
+     */
+    @FunctionalInterface
+    private interface LeafConsumer {
+        void accept(String key, JsonParser parser) throws IOException;
+    }
+
+    private final ObjectReader reader;
+    private final boolean flattenArrays;
+    private final boolean escapeKeyDots;
+
+    public JsonFlattener(ObjectReader reader) {
+        this(reader, false, false);
+    }
+
+    public JsonFlattener(ObjectReader reader, boolean flattenArrays, boolean escapeKeyDots) {
+        this.reader = reader;
+        this.flattenArrays = flattenArrays;
+        this.escapeKeyDots = escapeKeyDots;
+    }
+
+    public boolean isFlatteningArrays() {
+        return flattenArrays;
+    }
+
+    public boolean isEscapingKeyDots() {
+        return escapeKeyDots;
+    }
+
+    public RadixTreeMap<JsonNode> flattenToSortedMap(Path filePath) throws IOException {
+
+        RadixTreeMap<JsonNode> result = new RadixTreeMap<>();
+        flatten(filePath, result::put);
+
+        return result;
+
+    }
+
+    /**
+     * Flattens the file keeping the leaf values in the arena instead of the {@link JsonNode} objects,
+     * the values of the returned map are the references to the arena.
+     */
+    public RadixTreeMap<Long> flattenToCompactMap(Path filePath, LeafValueArena arena) throws IOException {
+
+        RadixTreeMap<Long> result = new RadixTreeMap<>();
+        flattenFile(filePath, (key, leafParser) -> result.put(key, arena.add(leafParser, reader)));
+
+        return result;
+
+    }
+
+    public void flatten(Path filePath, EntryConsumer consumer) throws IOException {
+        flattenFile(filePath, (key, leafParser) -> consumer.accept(key, reader.readTree(leafParser)));
+    }
+
+    /**
+     * Gives only the flattened keys, the values are skipped by the parser without being read.
+     */
+    public void flattenKeys(Path filePath, KeyConsumer consumer) throws IOException {
+        flattenFile(filePath, (key, leafParser) -> {
+            leafParser.skipChildren();
+            consumer.accept(key);
+        });
+    }
+
+    /**
+     * Same flattening of the tree which is read already.
+     */
+    public void flatten(JsonNode rootNode, BiConsumer<String, JsonNode> consumer) {
+        if (rootNode.isObject()) {
+            flattenNode(new KeyPath(escapeKeyDots), rootNode, consumer);
+        }
+    }
+
+    /**
+     * Flattens the value found under the path which is flattened already, for the callers
+     * reading only some of the values of the file.
+     */
+    public void flatten(String path, JsonNode value, BiConsumer<String, JsonNode> consumer) {
+        KeyPath keyPath = new KeyPath(escapeKeyDots);
+        keyPath.pushPath(path);
+        flattenNode(keyPath, value, consumer);
+    }
+
+    /**
+     * Same as above, for the value of the field of the object under the path (empty for the root object),
+     * so the key is built in the path buffer instead of being concatenated first.
+     */
+    public void flatten(String objectPath, String fieldName, JsonNode value, BiConsumer<String, JsonNode> consumer) {
+        KeyPath keyPath = new KeyPath(escapeKeyDots);
+        if (!objectPath.isEmpty()) {
+            keyPath.pushPath(objectPath);
+        }
+        keyPath.pushField(fieldName);
+        flattenNode(keyPath, value, consumer);
+    }
+
+    public void flatten(JsonParser parser, EntryConsumer consumer) throws IOException {
+        // scalars and arrays are leaves, only this value gets materialized
+        flattenLeaves(parser, (key, leafParser) -> consumer.accept(key, reader.readTree(leafParser)));
+    }
+
+    private void flattenFile(Path filePath, LeafConsumer consumer) throws IOException {
+        DataFormat format = DataFormat.detect(filePath);
+        try (JsonParser parser = format.createFormatParser(reader, filePath.toAbsolutePath())) {
+            if (format == DataFormat.NDJSON) {
+                readRecords(parser, consumer);
+            } else {
+                flattenLeaves(parser, consumer);
+            }
+        }
+    }
+
+    private static void readRecords(JsonParser parser, LeafConsumer consumer) throws IOException {
+
+        JsonToken token;
+        while ((token = parser.nextToken()) != null) {
+
+            if (token != JsonToken.START_OBJECT
+                    || !DataFormat.RECORD_KEY_FIELD.equals(parser.nextFieldName())
+                    || parser.nextToken() != JsonToken.VALUE_STRING) {
+                throw invalidRecord(parser);
+            }
+            String key = parser.getText();
+
+            if (!DataFormat.RECORD_VALUE_FIELD.equals(parser.nextFieldName())) {
+                throw invalidRecord(parser);
+            }
+            parser.nextToken();
+            consumer.accept(key, parser);
+
+            if (parser.nextToken() != JsonToken.END_OBJECT) {
+                throw invalidRecord(parser);
+            }
+
+        }
+
+    }
+
+    private static IOException invalidRecord(JsonParser parser) {
+        return new IOException(MessageFormat.format(
+                "Invalid NDJSON record at line {0}, expected '{'\"key\": ..., \"value\": ...'}'",
+                parser.getCurrentLocation().getLineNr()
+        ));
+    }
+
+    private void flattenLeaves(JsonParser parser, LeafConsumer consumer) throws IOException {
+
+        // same as the tree-based flattening: anything but an object in the root gives no entries
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return;
+        }
+
+        KeyPath path = new KeyPath(escapeKeyDots);
+        // next index of each array being read, or -1 for an object, the root object included
+        int[] nextIndexes = new int[16];
+        nextIndexes[0] = -1;
+        int depth = 1;
+        JsonToken token;
+
+        while ((token = parser.nextToken()) != null) {
+
+            if (token == JsonToken.END_OBJECT || token == JsonToken.END_ARRAY) {
+                if (--depth == 0) {
+                    break;
+                }
+                path.pop();
+                continue;
+            }
+
+            if (token == JsonToken.FIELD_NAME) {
+                path.pushField(parser.getCurrentName());
+                token = parser.nextToken();
+            } else {
+                path.pushIndex(nextIndexes[depth - 1]++);
+            }
+
+            if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY && flattenArrays) {
+                if (depth == nextIndexes.length) {
+                    nextIndexes = Arrays.copyOf(nextIndexes, depth * 2);
+                }
+                nextIndexes[depth++] = token == JsonToken.START_OBJECT ? -1 : 0;
+            } else {
+                consumer.accept(path.toString(), parser);
+                path.pop();
+            }
+
+        }
+
+    }
+
+    private void flattenNode(KeyPath path, JsonNode node, BiConsumer<String, JsonNode> consumer) {
+
+        if (node.isObject()) {
+            Iterator<Map.Entry<String, JsonNode>> fieldsIterator = node.fields();
+            while (fieldsIterator.hasNext()) {
+                Map.Entry<String, JsonNode> field = fieldsIterator.next();
+                path.pushField(field.getKey());
+                flattenNode(path, field.getValue(), consumer);
+                path.pop();
+            }
+        } else if (node.isArray() && flattenArrays) {
+            for (int i = 0; i < node.size(); i++) {
+                path.pushIndex(i);
+                flattenNode(path, node.get(i), consumer);
+                path.pop();
+            }
+        } else {
+            consumer.accept(path.toString(), node);
+        }
+
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.jsonanalyzer.main;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Heap-based k-way merge of the cursors over key-sorted entries. Each step gives the next key together with
+ * the group of cursors that have it, ordered as the cursors were passed, so the caller decides which value wins.
+ * Only the current entry of each cursor is held in memory.
+ */
+public class KWayMerger<V> implements Closeable {
+
+    public interface EntryCursor<V> extends Closeable {
+
+        boolean next() throws IOException;
+
+        String getKey();
+
+        V getValue();
+
+    }
+
+    private static class Source<V> {
+
+        private final int index;
+        private final EntryCursor<V> cursor;
+
+        private Source(int index, EntryCursor<V> cursor) {
+            this.index = index;
+            this.cursor = cursor;
+        }
+
+    }
+
+    private final List<Source<V>> sources = new ArrayList<>();
+    private final PriorityQueue<Source<V>> queue = new PriorityQueue<>(
+            Comparator.<Source<V>, String>comparing(source -> source.cursor.getKey())
+                    .thenComparingInt(source -> source.index)
+    );
+    private final List<Source<V>> group = new ArrayList<>();
+
+    private String key;
+    private boolean started = false;
+
+    public KWayMerger(List<? extends EntryCursor<V>> cursors) {
+        for (EntryCursor<V> cursor : cursors) {
+            sources.add(new Source<>(sources.size(), cursor));
+        }
+    }
+
+    public boolean nextGroup() throws IOException {
+
+        if (!started) {
+            for (Source<V> source : sources) {
+                if (source.cursor.next()) {
+                    queue.add(source);
+                }
+            }
+            started = true;
+        } else {
+            // cursors of the previous group are moved forward only now, so their values stay readable until here
+            for (Source<V> source : group) {
+                if (source.cursor.next()) {
+                    queue.add(source);
+                }
+            }
+        }
+
+        group.clear();
+
+        if (queue.isEmpty()) {
+            key = null;
+            return false;
+        }
+
+        Source<V> firstSource = queue.poll();
+        key = firstSource.cursor.getKey();
+        group.add(firstSource);
+
+        while (!queue.isEmpty() && queue.peek().cursor.getKey().equals(key)) {
+            group.add(queue.poll());
+        }
+
+        return true;
+
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public int getGroupSize() {
+        return group.size();
+    }
+
+    public V getValue(int groupIndex) {
+        return group.get(groupIndex).cursor.getValue();
+    }
+
+    public int getSourceIndex(int groupIndex) {
+        return group.get(groupIndex).index;
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        IOException exception = null;
+
+        for (Source<V> source : sources) {
+            try {
+                source.cursor.close();
+            } catch (IOException e) {
+                if (exception == null) {
+                    exception = e;
+                } else {
+                    exception.addSuppressed(e);
+                }
+            }
+        }
+
+        if (exception != null) {
+            throw exception;
+        }
+
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.jsonanalyzer.main;
+
+import java.util.Arrays;
+
+/**
+ * Flattened path of the current value: the segments are appended to a single reusable buffer and cut off
+ * when the traversal leaves them, so a key String is only created for the leaf values, not for every level.
+ * The path itself is a char sequence, so it can be looked up (see {@link RadixTreeMap#containsKeyChars})
+ * without creating the String at all.
+ * <p>
+ * Fields are joined with dots and array elements are indexed, like {@code a.b[3].c}. With escaping, the dots,
+ * brackets and backslashes of the field names themselves are escaped with a backslash, so {@code {"a.b": 1}}
+ * gives {@code a\.b} and doesn't collide with {@code {"a": {"b": 1}}}.
+ */
+public final class KeyPath implements CharSequence {
+
+    private final boolean escapeKeyDots;
+    private final StringBuilder buffer = new StringBuilder(64);
+
+    private int[] segmentStarts = new int[16];
+    private int depth = 0;
+
+    public KeyPath(boolean escapeKeyDots) {
+        this.escapeKeyDots = escapeKeyDots;
+    }
+
+    public void pushField(String fieldName) {
+
+        pushSegment();
+        if (depth > 1) {
+            buffer.append('.');
+        }
+
+        if (!escapeKeyDots) {
+            buffer.append(fieldName);
+            return;
+        }
+
+        for (int i = 0; i < fieldName.length(); i++) {
+            char c = fieldName.charAt(i);
+            if (c == '.' || c == '[' || c == '\\') {
+                buffer.append('\\');
+            }
+            buffer.append(c);
+        }
+
+    }
+
+    public void pushIndex(int index) {
+        pushSegment();
+        buffer.append('[').append(index).append(']');
+    }
+
+    /**
+     * Appends the path which is flattened already as a single segment.
+     */
+    public void pushPath(String path) {
+        pushSegment();
+        buffer.append(path);
+    }
+
+    public void pop() {
+        buffer.setLength(segmentStarts[--depth]);
+    }
+
+    public boolean isEmpty() {
+        return depth == 0;
+    }
+
+    @Override
+    public int length() {
+        return buffer.length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return buffer.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return buffer.subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return buffer.toString();
+    }
+
+    private void pushSegment() {
+        if (depth == segmentStarts.length) {
+            segmentStarts = Arrays.copyOf(segmentStarts, depth * 2);
+        }
+        segmentStarts[depth++] = buffer.length();
+    }
+
+}
@@ -0,0 +1,242 @@
+package com.jsonanalyzer.main;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact storage of the flattened leaf values: strings are kept as UTF-8 bytes in large shared chunks,
+ * without a {@link TextNode}, a {@code String} and its array per value, and are written from the bytes as they are
+ * (or from the chars decoded into a reused buffer, for the char-based generators).
+ * Other leaves (numbers, booleans, arrays, broken strings) are rare in the bundles and stay {@link JsonNode} objects.
+ * <p>
+ * References to the strings are positive: chunk index in the high half and offset of the length-prefixed bytes
+ * in the low half, references to the other values are negative indexes.
+ */
+public class LeafValueArena {
+
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private static final int MAX_LENGTH_PREFIX_BYTES = 5;
+
+    private final List<byte[]> chunks = new ArrayList<>();
+    private final List<JsonNode> nodes = new ArrayList<>();
+
+    private byte[] chunk = new byte[0];
+    private int position = 0;
+    private char[] charBuffer = new char[256];
+
+    /**
+     * Stores the value of the current token of the parser, consuming the whole value.
+     */
+    public long add(JsonParser parser, ObjectReader reader) throws IOException {
+
+        if (parser.currentToken() == JsonToken.VALUE_STRING
+                && !hasLoneSurrogates(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength())) {
+            return addString(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+        }
+
+        nodes.add(reader.readTree(parser));
+
+        return -nodes.size();
+
+    }
+
+    public long add(JsonNode value) {
+
+        if (value.isTextual()) {
+            char[] chars = value.textValue().toCharArray();
+            if (!hasLoneSurrogates(chars, 0, chars.length)) {
+                return addString(chars, 0, chars.length);
+            }
+        }
+
+        nodes.add(value);
+
+        return -nodes.size();
+
+    }
+
+    public JsonNode get(long reference) {
+
+        if (reference < 0) {
+            return nodes.get((int) -reference - 1);
+        }
+
+        byte[] valueChunk = chunks.get((int) (reference >>> 32));
+        int length = readLength(valueChunk, (int) reference);
+        int offset = (int) reference + getLengthPrefixSize(length);
+
+        return TextNode.valueOf(new String(valueChunk, offset, length, StandardCharsets.UTF_8));
+
+    }
+
+    public void write(long reference, JsonGenerator generator) throws IOException {
+
+        if (reference < 0) {
+            generator.writeTree(nodes.get((int) -reference - 1));
+            return;
+        }
+
+        byte[] valueChunk = chunks.get((int) (reference >>> 32));
+        int length = readLength(valueChunk, (int) reference);
+        int offset = (int) reference + getLengthPrefixSize(length);
+
+        // the generator escapes the UTF-8 bytes as they are, without decoding them into a String first
+        generator.writeUTF8String(valueChunk, offset, length);
+
+    }
+
+    /**
+     * Same as {@link #write}, for the generators which can't write UTF-8 bytes, like the char-based ones.
+     */
+    public void writeChars(long reference, JsonGenerator generator) throws IOException {
+
+        if (reference < 0) {
+            generator.writeTree(nodes.get((int) -reference - 1));
+            return;
+        }
+
+        byte[] valueChunk = chunks.get((int) (reference >>> 32));
+        int length = readLength(valueChunk, (int) reference);
+        int offset = (int) reference + getLengthPrefixSize(length);
+
+        // there are never more chars than the UTF-8 bytes
+        if (charBuffer.length < length) {
+            charBuffer = new char[Math.max(length, charBuffer.length * 2)];
+        }
+        int charsLength = 0;
+        for (int i = offset; i < offset + length; ) {
+            int b = valueChunk[i++] & 0xFF;
+            if (b < 0x80) {
+                charBuffer[charsLength++] = (char) b;
+            } else if (b < 0xE0) {
+                charBuffer[charsLength++] = (char) ((b & 0x1F) << 6 | valueChunk[i++] & 0x3F);
+            } else if (b < 0xF0) {
+                charBuffer[charsLength++] = (char) ((b & 0x0F) << 12 | (valueChunk[i++] & 0x3F) << 6 | valueChunk[i++] & 0x3F);
+            } else {
+                int codePoint = (b & 0x07) << 18 | (valueChunk[i++] & 0x3F) << 12 | (valueChunk[i++] & 0x3F) << 6
+                        | valueChunk[i++] & 0x3F;
+                charBuffer[charsLength++] = Character.highSurrogate(codePoint);
+                charBuffer[charsLength++] = Character.lowSurrogate(codePoint);
+            }
+        }
+
+        generator.writeString(charBuffer, 0, charsLength);
+
+    }
+
+    /**
+     * Number of bytes taken by the chunks, including the not yet used part of the last one.
+     */
+    public long getAllocatedBytes() {
+
+        long allocatedBytes = 0;
+        for (byte[] valueChunk : chunks) {
+            allocatedBytes += valueChunk.length;
+        }
+
+        return allocatedBytes;
+
+    }
+
+    private long addString(char[] chars, int offset, int length) {
+
+        // a surrogate pair (like an emoji) takes 4 bytes, 2 for each of its chars
+        int utf8Length = 0;
+        for (int i = offset; i < offset + length; i++) {
+            char c = chars[i];
+            utf8Length += c < 0x80 ? 1 : c < 0x800 || Character.isSurrogate(c) ? 2 : 3;
+        }
+
+        if (position + MAX_LENGTH_PREFIX_BYTES + utf8Length > chunk.length) {
+            chunk = new byte[Math.max(CHUNK_SIZE, MAX_LENGTH_PREFIX_BYTES + utf8Length)];
+            chunks.add(chunk);
+            position = 0;
+        }
+
+        long reference = ((long) (chunks.size() - 1) << 32) | position;
+
+        // the length is a varint, most of the values only need a single byte for it
+        for (int remainingLength = utf8Length; ; remainingLength >>>= 7) {
+            if (remainingLength < 0x80) {
+                chunk[position++] = (byte) remainingLength;
+                break;
+            }
+            chunk[position++] = (byte) (remainingLength & 0x7F | 0x80);
+        }
+
+        for (int i = offset; i < offset + length; i++) {
+            char c = chars[i];
+            if (c < 0x80) {
+                chunk[position++] = (byte) c;
+            } else if (c < 0x800) {
+                chunk[position++] = (byte) (0xC0 | c >> 6);
+                chunk[position++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c)) {
+                int codePoint = Character.toCodePoint(c, chars[++i]);
+                chunk[position++] = (byte) (0xF0 | codePoint >> 18);
+                chunk[position++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                chunk[position++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                chunk[position++] = (byte) (0x80 | codePoint & 0x3F);
+            } else {
+                chunk[position++] = (byte) (0xE0 | c >> 12);
+                chunk[position++] = (byte) (0x80 | c >> 6 & 0x3F);
+                chunk[position++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+
+        return reference;
+
+    }
+
+    /**
+     * A surrogate which isn't a part of a pair has no UTF-8 bytes, so such a string is kept as a node to read back the same.
+     */
+    private static boolean hasLoneSurrogates(char[] chars, int offset, int length) {
+
+        for (int i = offset; i < offset + length; i++) {
+            if (Character.isHighSurrogate(chars[i]) && i + 1 < offset + length && Character.isLowSurrogate(chars[i + 1])) {
+                i++;
+            } else if (Character.isSurrogate(chars[i])) {
+                return true;
+            }
+        }
+
+        return false;
+
+    }
+
+    private static int readLength(byte[] valueChunk, int offset) {
+
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte lengthByte = valueChunk[offset++];
+            length |= (lengthByte & 0x7F) << shift;
+            if (lengthByte >= 0) {
+                return length;
+            }
+        }
+
+    }
+
+    private static int getLengthPrefixSize(int length) {
+
+        int size = 1;
+        while (length >= 0x80) {
+            length >>>= 7;
+            size++;
+        }
+
+        return size;
+
+    }
+
+}
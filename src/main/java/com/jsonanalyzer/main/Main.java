@@ -1,112 +1,328 @@
 package com.jsonanalyzer.main;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.json.JsonReadFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
-import org.apache.commons.lang3.tuple.ImmutablePair;
-import org.apache.commons.lang3.tuple.Pair;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
-import java.io.*;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class Main {
 
+    private static final String SUBTREE_WILDCARD = ".*";
+
     private static ObjectMapper mapper;
     private static ObjectReader reader;
+    private static JsonFlattener flattener;
+    private static FileTaskRunner taskRunner = new FileTaskRunner(1);
+    private static boolean keepLayout = false;
+    private static boolean useMerkleCompare = false;
+    private static boolean useMerkleSidecars = false;
+    private static boolean compareValues = false;
+    private static boolean flattenArrays = false;
+    private static boolean escapeKeyDots = false;
+    private static DataFormat outputFormat = DataFormat.PRETTY;
+    private static long memoryBudgetBytes = 0;
+    private static Path spillDirectory;
+    private static ConflictPolicy conflictPolicy = ConflictPolicy.LAST_WINS;
+    private static boolean reportConflicts = false;
+    private static Path cacheDirectory;
+    private static long cacheSizeBytes = 1024L * 1024 * 1024;
+    private static ParseCache parseCache;
+    private static ParsedFilesMemoryCache parsedFilesMemoryCache;
+    private static RunStats stats = new RunStats(null);
+    private static RunSummary summary = new RunSummary(null);
+    private static Set<Path> outputFilesPaths = Collections.emptySet();
 
     public static void main(String[] args) throws IOException {
 
+        if (args.length > 0 && ProgramOptions.SERVER.getName().equalsIgnoreCase(args[0])) {
+            AnalyzerServer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && ProgramOptions.CLIENT.getName().equalsIgnoreCase(args[0])) {
+            AnalyzerClient.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        run(args);
+
+    }
+
+    public static void run(String... args) throws IOException {
+
+        resetOptions();
+
+        List<String> argsList = new ArrayList<>(Arrays.asList(args));
+
+        String threadsValue = extractFlag(argsList, ProgramFlags.THREADS);
+        if (threadsValue != null) {
+            try {
+                taskRunner = new FileTaskRunner(Integer.parseInt(threadsValue));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(
+                        MessageFormat.format("Invalid number of threads: {0}", threadsValue), e
+                );
+            }
+        }
+
+        compareValues = extractFlag(argsList, ProgramFlags.VALUES) != null;
+        keepLayout = extractFlag(argsList, ProgramFlags.KEEP_LAYOUT) != null;
+        useMerkleSidecars = extractFlag(argsList, ProgramFlags.MERKLE_SIDECAR) != null;
+        useMerkleCompare = extractFlag(argsList, ProgramFlags.MERKLE) != null || useMerkleSidecars;
+        flattenArrays = extractFlag(argsList, ProgramFlags.ARRAYS) != null;
+        escapeKeyDots = extractFlag(argsList, ProgramFlags.ESCAPE_DOTS) != null;
+
+        String formatValue = extractFlag(argsList, ProgramFlags.FORMAT);
+        if (formatValue != null) {
+            outputFormat = DataFormat.fromName(formatValue);
+        }
+        if (keepLayout && outputFormat == DataFormat.NDJSON) {
+            throw new IllegalArgumentException("--keep-layout can't be used with --format ndjson");
+        }
+
+        if (useMerkleCompare && escapeKeyDots) {
+            // the subtree hashes are taken by the unescaped paths, so they can't tell the escaped keys apart
+            throw new IllegalArgumentException("--merkle can't be used with --escape-dots");
+        }
+
+        String memoryValue = extractFlag(argsList, ProgramFlags.MEMORY);
+        if (memoryValue != null) {
+            try {
+                memoryBudgetBytes = Long.parseLong(memoryValue) * 1024 * 1024;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(
+                        MessageFormat.format("Invalid memory budget: {0}", memoryValue), e
+                );
+            }
+            if (memoryBudgetBytes <= 0) {
+                throw new IllegalArgumentException(MessageFormat.format("Invalid memory budget: {0}", memoryValue));
+            }
+        }
+
+        String tempDirectoryValue = extractFlag(argsList, ProgramFlags.TEMP_DIR);
+        if (tempDirectoryValue != null) {
+            spillDirectory = Paths.get(tempDirectoryValue);
+        }
+
+        String conflictPolicyValue = extractFlag(argsList, ProgramFlags.CONFLICT);
+        if (conflictPolicyValue != null) {
+            conflictPolicy = ConflictPolicy.fromName(conflictPolicyValue);
+            // a plain merge keeps the last values silently, as it always did, the report is only written on demand
+            reportConflicts = true;
+        }
+
+        String cacheValue = extractFlag(argsList, ProgramFlags.CACHE);
+        if (cacheValue != null) {
+            cacheDirectory = Paths.get(cacheValue);
+        }
+
+        String cacheSizeValue = extractFlag(argsList, ProgramFlags.CACHE_SIZE);
+        if (cacheSizeValue != null) {
+            try {
+                cacheSizeBytes = Long.parseLong(cacheSizeValue) * 1024 * 1024;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(
+                        MessageFormat.format("Invalid cache size: {0}", cacheSizeValue), e
+                );
+            }
+        }
+
+        String statsValue = extractFlag(argsList, ProgramFlags.STATS);
+        String summaryValue = extractFlag(argsList, ProgramFlags.SUMMARY);
+        // the stats and the summary can be written into an input directory, they're not inputs of the next run
+        outputFilesPaths = new HashSet<>();
+        for (String outputValue : new String[] {statsValue, summaryValue}) {
+            if (outputValue != null) {
+                outputFilesPaths.add(Paths.get(outputValue).toAbsolutePath().normalize());
+            }
+        }
+
+        args = argsList.toArray(new String[0]);
+
         String chosenOption = null;
         boolean isOptionValid = false;
 
         if (args.length >= 2) {
-            chosenOption = args[0];
+            String firstArg = args[0];
+            chosenOption = firstArg;
             isOptionValid = Arrays.stream(ProgramOptions.values())
-                    .anyMatch(programOption -> programOption.getName().equalsIgnoreCase(args[0]));
+                    .filter(programOption -> programOption != ProgramOptions.SERVER && programOption != ProgramOptions.CLIENT)
+                    .anyMatch(programOption -> programOption.getName().equalsIgnoreCase(firstArg));
         }
 
         if (chosenOption == null || !isOptionValid) {
             throw new IllegalArgumentException("Please choose one of the options: \n"
-                    + "-sort {json}"
-                    + "-compare {json_1} {json_2} \n"
-                    + "-cleanup {json_excluded} {json_target} \n"
-                    + "-merge {json_1} {json_2} ... \n"
-                    + "-find {source_json} {set_name_1}={json_set_1} {set_name_2}={json_set_2} ..."
+                    + "-sort {json_1} {json_2} ... \n"
+                    + "-compare {json_1} {json_2} [--values] [--merkle | --merkle-sidecar] \n"
+                    + "-compare {dir_1} {dir_2} [--values] [--merkle | --merkle-sidecar] \n"
+                    + "-compare-all {json_base} {json_1} {json_2} ... \n"
+                    + "-cleanup {json_excluded} {json_target_1} {json_target_2} ... [--keep-layout] \n"
+                    + "-merge {json_1} {json_2} ... [-conflict last|first|fail] \n"
+                    + "-find {source_json} {set_name_1}={json_set_1} {set_name_2}={json_set_2} ... \n"
+                    + "-find {source_json} {index_file} ... \n"
+                    + "-index {index_file} {set_name_1}={json_set_1} {set_name_2}={json_set_2} ... \n"
+                    + "-server [{port}] \n"
+                    + "-client {option} {arguments} ... | -client -batch {commands_file} | -client -shutdown \n"
+                    + "Flags: -threads {number_of_worker_threads}, -memory {budget_in_mb} [-temp-dir {spill_dir}] (for -sort and -merge), "
+                    + "--arrays, --escape-dots, --format pretty|compact|ndjson|smile|cbor, "
+                    + "-cache {cache_dir} [-cache-size {size_in_mb}], --stats {stats_json}, --summary {summary_json} \n"
+                    + "Any {json} can also be a directory (all the JSON files under it) or a glob, like \"dir/**/en.json\", "
+                    + "and any of the formats, which is detected"
             );
         }
 
-        String[] arguments = Arrays.copyOfRange(args, 1, args.length);
+        if (threadsValue == null && hasExpandableInputs(Arrays.copyOfRange(args, 1, args.length))) {
+            taskRunner = FileTaskRunner.forManyFiles();
+        }
 
-        if (ProgramOptions.ALIGN_AND_SORT.getName().equalsIgnoreCase(chosenOption)) {
-            if (arguments.length != 1) {
-                throw new IllegalArgumentException(
-                        MessageFormat.format("Not enough / too many files for sorting: {0}/1", arguments.length)
-                );
+        stats = new RunStats(chosenOption.toLowerCase());
+        summary = new RunSummary(chosenOption.toLowerCase());
+        try {
+            runOption(chosenOption, Arrays.copyOfRange(args, 1, args.length));
+        } finally {
+            stats.finishPhase();
+            if (statsValue != null) {
+                stats.write(getObjectMapper(), Paths.get(statsValue));
+            }
+            if (summaryValue != null) {
+                summary.write(getObjectMapper(), Paths.get(summaryValue));
             }
-            alignAndSort(arguments);
+        }
+
+    }
+
+    private static void runOption(String chosenOption, String[] arguments) throws IOException {
+
+        if (ProgramOptions.ALIGN_AND_SORT.getName().equalsIgnoreCase(chosenOption)) {
+            alignAndSort(InputFiles.expand(outputFilesPaths, resultFilesOf("sorted"), arguments));
         } else if (ProgramOptions.COMPARE.getName().equalsIgnoreCase(chosenOption)) {
             if (arguments.length != 2) {
                 throw new IllegalArgumentException(
                         MessageFormat.format("Not enough / too many files for comparison: {0}/2", arguments.length)
                 );
             }
-            findUniqueEntriesForEachFile(arguments[0], arguments[1]);
+            if (InputFiles.isExpandable(arguments[0]) || InputFiles.isExpandable(arguments[1])) {
+                compareEachPairOfFiles(arguments[0], arguments[1]);
+            } else {
+                findUniqueEntriesForEachFile(arguments[0], arguments[1]);
+            }
+        } else if (ProgramOptions.COMPARE_ALL.getName().equalsIgnoreCase(chosenOption)) {
+            if (arguments.length < 2) {
+                throw new IllegalArgumentException(
+                        MessageFormat.format("Not enough files for comparison: {0}/2+", arguments.length)
+                );
+            }
+            Set<Path> compareOutputFilesPaths = new HashSet<>(outputFilesPaths);
+            compareOutputFilesPaths.addAll(resultFilesOf("matrix").apply(Paths.get(arguments[0])));
+            compareWithEachFile(arguments[0], InputFiles.expand(compareOutputFilesPaths, filePath -> Collections.emptyList(),
+                    Arrays.copyOfRange(arguments, 1, arguments.length)));
         } else if (ProgramOptions.CLEANUP.getName().equalsIgnoreCase(chosenOption)) {
             if (arguments.length < 2) {
                 throw new IllegalArgumentException(
                         MessageFormat.format("Not enough files for cleanup: {0}/2+", arguments.length)
                 );
             }
-            removeExcludedKeysFromEachFile(arguments[0], Arrays.copyOfRange(arguments, 1, arguments.length));
+            removeExcludedKeysFromEachFile(arguments[0], InputFiles.expand(outputFilesPaths, resultFilesOf("clean"),
+                    Arrays.copyOfRange(arguments, 1, arguments.length)));
         } else if (ProgramOptions.MERGE.getName().equalsIgnoreCase(chosenOption)) {
-            if (arguments.length < 2) {
+            Path targetDirectoryPath = InputFiles.getBaseDirectory(arguments[0]);
+            Set<Path> mergeOutputFilesPaths = new HashSet<>(outputFilesPaths);
+            for (String extension : getFileExtensions()) {
+                mergeOutputFilesPaths.add(resolveFilePath(targetDirectoryPath, "merged" + extension).toAbsolutePath().normalize());
+                mergeOutputFilesPaths.add(resolveFilePath(targetDirectoryPath, "merged (conflicts)" + extension)
+                        .toAbsolutePath().normalize());
+            }
+            List<String> filesPaths = InputFiles.expand(mergeOutputFilesPaths, filePath -> Collections.emptyList(), arguments);
+            if (filesPaths.size() < 2) {
                 throw new IllegalArgumentException(
-                        MessageFormat.format("Not enough files for merge: {0}/2+", arguments.length)
+                        MessageFormat.format("Not enough files for merge: {0}/2+", filesPaths.size())
                 );
             }
-            mergeFiles(arguments);
+            mergeFiles(targetDirectoryPath, filesPaths.toArray(new String[0]));
         } else if (ProgramOptions.FIND.getName().equalsIgnoreCase(chosenOption)) {
             if (arguments.length < 2) {
                 throw new IllegalArgumentException(
                         MessageFormat.format("Not enough files for finding inclusions: {0}/2+", arguments.length)
                 );
             }
-            List<Pair<String, String>> listOfNamedSets = new ArrayList<>();
+            List<String> indexFilesPaths = new ArrayList<>();
+            List<Map.Entry<String, String>> listOfNamedSets = new ArrayList<>();
             for (int i = 1; i < arguments.length; i++) {
-                String[] setNameAndFilePath = arguments[i].split("=");
-                listOfNamedSets.add(new ImmutablePair<>(setNameAndFilePath[0], setNameAndFilePath[1]));
+                if (arguments[i].contains("=")) {
+                    listOfNamedSets.addAll(expandNamedSet(parseNamedSet(arguments[i])));
+                } else {
+                    indexFilesPaths.add(arguments[i]);
+                }
             }
 
-            findInclusions(arguments[0], listOfNamedSets.toArray(new Pair[0]));
+            findInclusions(InputFiles.expand(outputFilesPaths, resultFilesOf("inclusions"), arguments[0]), indexFilesPaths,
+                    listOfNamedSets.toArray(new Map.Entry[0]));
+        } else if (ProgramOptions.INDEX.getName().equalsIgnoreCase(chosenOption)) {
+            if (arguments.length < 2) {
+                throw new IllegalArgumentException(
+                        MessageFormat.format("Not enough files for building the index: {0}/2+", arguments.length)
+                );
+            }
+            outputFilesPaths.add(Paths.get(arguments[0]).toAbsolutePath().normalize());
+            List<Map.Entry<String, String>> listOfNamedSets = new ArrayList<>();
+            for (int i = 1; i < arguments.length; i++) {
+                listOfNamedSets.addAll(expandNamedSet(parseNamedSet(arguments[i])));
+            }
+
+            buildInclusionIndex(arguments[0], listOfNamedSets);
         }
 
     }
 
-    private static void alignAndSort(String... sourceFilesPaths) throws IOException {
+    private static boolean hasExpandableInputs(String[] arguments) {
+        // the named sets are expanded too, like "features=src/features"
+        return Arrays.stream(arguments)
+                .map(argument -> argument.contains("=") ? argument.substring(argument.indexOf('=') + 1) : argument)
+                .anyMatch(InputFiles::isExpandable);
+    }
 
-        Set<String> uniqueSourceFilePaths = Arrays.stream(sourceFilesPaths).collect(Collectors.toSet());
+    private static void alignAndSort(List<String> sourceFilesPaths) throws IOException {
 
-        System.out.println("Sorting & aligning the files...");
-        for (String filePath : uniqueSourceFilePaths) {
+        initGlobalObjectsIfNeeded();
 
-            // TODO: parallelize this section
-            // -----------------------------------
-            Map<String, JsonNode> nodesPlainMap = readJsonFileToPlainMap(filePath);
+        System.out.println(MessageFormat.format("Sorting & aligning {0} file(s)...", sourceFilesPaths.size()));
+        stats.startPhase("sort");
+        long sorterMemoryBudgetBytes = getSorterMemoryBudgetBytes(getMemoryBudgetBytes(), sourceFilesPaths.size());
+        taskRunner.runForEachFile(sourceFilesPaths, stats.track(summary.track(filePath -> {
 
-            String sortedEntriesAsString = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(nodesPlainMap);
             Path targetFilePath = Paths.get(filePath);
-            String newFileName = targetFilePath.getFileName().toString();
-            newFileName = newFileName.substring(0, newFileName.lastIndexOf(".json")) + " (sorted).json";
-            writeToFile(targetFilePath.getParent(), newFileName, sortedEntriesAsString);
-            // -----------------------------------
+            String newFileName = getResultFileName(targetFilePath, "sorted");
 
-        }
+            if (memoryBudgetBytes > 0) {
+                try (ExternalSorter sorter = new ExternalSorter(mapper, sorterMemoryBudgetBytes, spillDirectory,
+                        ExternalSorter.DEFAULT_MAX_MERGED_RUNS)) {
+                    flattenFile(filePath, sorter::add);
+                    writeSortedEntriesToFile(targetFilePath.getParent(), newFileName, sorter);
+                }
+            } else {
+                LeafValueArena arena = new LeafValueArena();
+                RadixTreeMap<Long> compactPlainMap = readJsonFileToCompactMap(filePath, arena);
+                writeCompactEntriesToFile(targetFilePath.getParent(), newFileName, compactPlainMap, arena);
+            }
+            summary.recordResult(filePath, resolveFilePath(targetFilePath.getParent(), newFileName));
+
+            return null;
+
+        })));
 
         System.out.println("Done!");
 
@@ -116,245 +332,820 @@ public class Main {
 
         initGlobalObjectsIfNeeded();
 
-        System.out.println("Reading & aligning files...");
-        // TODO: parallelize this section
-        // -----------------------------------
-        Map<String, JsonNode> firstNodesPlainMap = readJsonFileToPlainMap(firstFilePath);
-        Map<String, JsonNode> secondNodesPlainMap = readJsonFileToPlainMap(secondFilePath);
-        // -----------------------------------
+        List<Map<String, JsonNode>> plainMaps;
+        if (useMerkleCompare) {
+            plainMaps = readDifferingEntries(firstFilePath, secondFilePath);
+        } else {
+            System.out.println("Reading & aligning files...");
+            stats.startPhase("read");
+            plainMaps = new ArrayList<>(
+                    taskRunner.runForEachFile(Arrays.asList(firstFilePath, secondFilePath), stats.track(Main::readJsonFileToPlainMap))
+                            .values()
+            );
+        }
+
+        Map<String, JsonNode> firstNodesPlainMap = plainMaps.get(0);
+        Map<String, JsonNode> secondNodesPlainMap = plainMaps.get(plainMaps.size() - 1);
 
         if (firstNodesPlainMap == null || secondNodesPlainMap == null) {
             throw new RuntimeException("Cannot align keys in one or both files :(");
         }
 
         System.out.println("Comparing files...");
-        Map<String, JsonNode>[] uniqueEntries = findUniqueEntries(firstNodesPlainMap, secondNodesPlainMap);
+        stats.startPhase("compare");
+        Map<String, JsonNode>[] uniqueEntries = findUniqueEntries(firstNodesPlainMap, secondNodesPlainMap, compareValues);
 
         System.out.println("Writing files to disk...");
-        // TODO: parallelize this section
-        // -----------------------------------
-        Path firstFilePathObj = Paths.get(firstFilePath);
-        String newFirstFileName = firstFilePathObj.getFileName().toString();
-        newFirstFileName = newFirstFileName.substring(0, newFirstFileName.lastIndexOf(".json")) + " (unique).json";
+        stats.startPhase("write");
+        Map<String, Map<String, JsonNode>> uniqueEntriesByFile = new LinkedHashMap<>();
+        uniqueEntriesByFile.put(firstFilePath, uniqueEntries[0]);
+        uniqueEntriesByFile.putIfAbsent(secondFilePath, uniqueEntries[1]);
+
+        taskRunner.runForEachFile(uniqueEntriesByFile.keySet(), stats.track(summary.track(filePath -> {
+            writeUniqueEntriesToFile(filePath, uniqueEntriesByFile.get(filePath));
+            return null;
+        })));
+
+        if (compareValues) {
+            writeChangedEntriesToFile(firstFilePath, uniqueEntries[2]);
+        }
 
-        String firstFileUniqueEntries = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(uniqueEntries[0]);
-        writeToFile(firstFilePathObj.getParent(), newFirstFileName, firstFileUniqueEntries);
+        System.out.println("Done!");
+
+    }
+
+    /**
+     * Compares the files of both directories (or globs) having the same paths relative to them, each pair
+     * on its own, like two files passed to -compare. A file without a pair is compared with an empty file,
+     * so all of its entries are unique.
+     */
+    private static void compareEachPairOfFiles(String firstPath, String secondPath) throws IOException {
+
+        initGlobalObjectsIfNeeded();
 
-        Path secondFilePathObj = Paths.get(secondFilePath);
-        String newSecondFileName = secondFilePathObj.getFileName().toString();
-        newSecondFileName = newSecondFileName.substring(0, newSecondFileName.lastIndexOf(".json")) + " (unique).json";
+        Function<Path, List<Path>> resultFilesOf = resultFilesOf("unique", "changed");
+        Map<String, String> firstFilesByRelativePath =
+                InputFiles.expandWithRelativePaths(firstPath, outputFilesPaths, resultFilesOf);
+        Map<String, String> secondFilesByRelativePath =
+                InputFiles.expandWithRelativePaths(secondPath, outputFilesPaths, resultFilesOf);
+
+        // each pair is processed under the path of its first file, or of the second one if there's no first file
+        Set<String> relativePaths = new TreeSet<>(firstFilesByRelativePath.keySet());
+        relativePaths.addAll(secondFilesByRelativePath.keySet());
+
+        Map<String, Map.Entry<String, String>> filePairs = new LinkedHashMap<>();
+        for (String relativePath : relativePaths) {
+            String firstFilePath = firstFilesByRelativePath.get(relativePath);
+            String secondFilePath = secondFilesByRelativePath.get(relativePath);
+            if (firstFilePath != null && secondFilePath != null && isSameFile(firstFilePath, secondFilePath)) {
+                continue;
+            }
+            filePairs.put(firstFilePath != null ? firstFilePath : secondFilePath,
+                    new AbstractMap.SimpleImmutableEntry<>(firstFilePath, secondFilePath));
+        }
+
+        System.out.println(MessageFormat.format("Comparing {0} pair(s) of files...", filePairs.size()));
+        stats.startPhase("compare");
+        MerkleComparator comparator = useMerkleCompare ? new MerkleComparator(reader, flattener) : null;
+
+        taskRunner.runForEachFile(filePairs.keySet(), stats.track(summary.track(pairFilePath -> {
+
+            String firstFilePath = filePairs.get(pairFilePath).getKey();
+            String secondFilePath = filePairs.get(pairFilePath).getValue();
+
+            Map<String, JsonNode> firstNodesPlainMap;
+            Map<String, JsonNode> secondNodesPlainMap;
+            if (firstFilePath == null || secondFilePath == null) {
+                firstNodesPlainMap = firstFilePath != null ? readJsonFileToPlainMap(firstFilePath) : new RadixTreeMap<>();
+                secondNodesPlainMap = secondFilePath != null ? readJsonFileToPlainMap(secondFilePath) : new RadixTreeMap<>();
+            } else if (comparator != null) {
+                long startNanos = System.nanoTime();
+                Path firstFilePathObj = Paths.get(firstFilePath);
+                Path secondFilePathObj = Paths.get(secondFilePath);
+                MerkleComparator.SubtreeHashes firstHashes = comparator.getHashes(firstFilePathObj, useMerkleSidecars);
+                MerkleComparator.SubtreeHashes secondHashes = comparator.getHashes(secondFilePathObj, useMerkleSidecars);
+                firstNodesPlainMap = comparator.flattenDifferingEntries(firstHashes, secondHashes);
+                secondNodesPlainMap = comparator.flattenDifferingEntries(secondHashes, firstHashes);
+                stats.recordRead(startNanos, Files.size(firstFilePathObj) + Files.size(secondFilePathObj),
+                        firstNodesPlainMap.size() + secondNodesPlainMap.size());
+            } else {
+                firstNodesPlainMap = readJsonFileToPlainMap(firstFilePath);
+                secondNodesPlainMap = readJsonFileToPlainMap(secondFilePath);
+            }
 
-        String secondFileUniqueEntries = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(uniqueEntries[1]);
-        writeToFile(secondFilePathObj.getParent(), newSecondFileName, secondFileUniqueEntries);
-        // -----------------------------------
+            Map<String, JsonNode>[] uniqueEntries = findUniqueEntries(firstNodesPlainMap, secondNodesPlainMap, compareValues);
+
+            if (firstFilePath != null) {
+                writeUniqueEntriesToFile(firstFilePath, uniqueEntries[0]);
+            }
+            if (secondFilePath != null) {
+                writeUniqueEntriesToFile(secondFilePath, uniqueEntries[1]);
+            }
+            if (compareValues && firstFilePath != null && secondFilePath != null) {
+                writeChangedEntriesToFile(firstFilePath, uniqueEntries[2]);
+            }
+
+            return null;
+
+        })));
 
         System.out.println("Done!");
 
     }
 
-    private static void removeExcludedKeysFromEachFile(String excludedKeysFilePath, String... targetFilesPaths) throws IOException {
+    private static void writeUniqueEntriesToFile(String filePath, Map<String, JsonNode> uniqueEntries) throws IOException {
+        Path filePathObj = Paths.get(filePath);
+        String newFileName = getResultFileName(filePathObj, "unique");
+        writeEntriesToFile(filePathObj.getParent(), newFileName, uniqueEntries);
+        summary.recordResult(filePath, resolveFilePath(filePathObj.getParent(), newFileName));
+    }
+
+    private static void writeChangedEntriesToFile(String filePath, Map<String, JsonNode> changedEntries) throws IOException {
+        Path filePathObj = Paths.get(filePath);
+        String newFileName = getResultFileName(filePathObj, "changed");
+        writeEntriesToFile(filePathObj.getParent(), newFileName, changedEntries);
+        summary.recordResult(filePath, resolveFilePath(filePathObj.getParent(), newFileName));
+    }
+
+    /**
+     * Checks the keys of all the target files against the keys of the base file, parsed once. Presence of the base keys
+     * in each target file is kept as a bitset over the ordinals of the base keys, so the memory per target file
+     * is a bit per base key plus its extra keys.
+     */
+    @SuppressWarnings("unchecked")
+    private static void compareWithEachFile(String baseFilePath, List<String> targetFilesPaths) throws IOException {
 
         initGlobalObjectsIfNeeded();
 
-        System.out.println("Parsing input files...");
-        Set<String> keysToExclude = readJsonFileToPlainMap(excludedKeysFilePath).keySet();
-        Set<String> uniqueTargetFilePaths = Arrays.stream(targetFilesPaths).collect(Collectors.toSet());
+        System.out.println("Reading base file...");
+        stats.startPhase("read");
+        long readStartNanos = System.nanoTime();
+        // only the keys are needed, the values of the base file are skipped by the parser
+        Set<String> sortedBaseKeys = new TreeSet<>();
+        flattener.flattenKeys(Paths.get(baseFilePath), sortedBaseKeys::add);
+        String[] baseKeys = sortedBaseKeys.toArray(new String[0]);
+        stats.recordRead(readStartNanos, Files.size(Paths.get(baseFilePath)), baseKeys.length);
+        Map<String, Integer> baseKeyOrdinals = new HashMap<>(baseKeys.length * 2);
+        for (int i = 0; i < baseKeys.length; i++) {
+            baseKeyOrdinals.put(baseKeys[i], i);
+        }
+
+        targetFilesPaths = new ArrayList<>(targetFilesPaths);
+        targetFilesPaths.removeIf(filePath -> isSameFile(filePath, baseFilePath));
+
+        System.out.println(MessageFormat.format("Checking {0} file(s) against {1} key(s)...",
+                targetFilesPaths.size(), baseKeys.length));
+        stats.startPhase("scan");
+        Map<String, Map.Entry<BitSet, Set<String>>> keysByFile = taskRunner.runForEachFile(targetFilesPaths, stats.track(summary.track(filePath -> {
+
+            long startNanos = System.nanoTime();
+            long[] keysCount = new long[1];
+            BitSet presentBaseKeys = new BitSet(baseKeys.length);
+            Set<String> extraKeys = new TreeSet<>();
+
+            flattener.flattenKeys(Paths.get(filePath), key -> {
+                Integer ordinal = baseKeyOrdinals.get(key);
+                if (ordinal != null) {
+                    presentBaseKeys.set(ordinal);
+                } else {
+                    extraKeys.add(key);
+                }
+                keysCount[0]++;
+            });
 
-        System.out.println("Removing entries from the files...");
-        for (String filePath : uniqueTargetFilePaths) {
+            stats.recordRead(startNanos, Files.size(Paths.get(filePath)), keysCount[0]);
+            return new AbstractMap.SimpleImmutableEntry<>(presentBaseKeys, extraKeys);
 
-            // TODO: parallelize this section
-            // -----------------------------------
-            Map<String, JsonNode> nodesPlainMap = readJsonFileToPlainMap(filePath);
+        })));
 
-            if (nodesPlainMap != null) {
-                for (String keyToExclude : keysToExclude) {
-                    nodesPlainMap.remove(keyToExclude);
+        System.out.println("Writing report to disk...");
+        stats.startPhase("write");
+
+        Map<String, Map<String, Integer>> summaryByFile = new LinkedHashMap<>();
+        List<String>[] missingFilesByOrdinal = new List[baseKeys.length];
+        Map<String, List<String>> extraFilesByKey = new TreeMap<>();
+
+        for (Map.Entry<String, Map.Entry<BitSet, Set<String>>> fileKeys : keysByFile.entrySet()) {
+
+            BitSet presentBaseKeys = fileKeys.getValue().getKey();
+            for (int i = presentBaseKeys.nextClearBit(0); i < baseKeys.length; i = presentBaseKeys.nextClearBit(i + 1)) {
+                if (missingFilesByOrdinal[i] == null) {
+                    missingFilesByOrdinal[i] = new ArrayList<>();
                 }
+                missingFilesByOrdinal[i].add(fileKeys.getKey());
+            }
+            for (String extraKey : fileKeys.getValue().getValue()) {
+                extraFilesByKey.computeIfAbsent(extraKey, k -> new ArrayList<>()).add(fileKeys.getKey());
             }
 
-            String entriesWithoutExcludedKeysAsString = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(nodesPlainMap);
-            Path targetFilePath = Paths.get(filePath);
-            String newFileName = targetFilePath.getFileName().toString();
-            newFileName = newFileName.substring(0, newFileName.lastIndexOf(".json")) + " (clean).json";
-            writeToFile(targetFilePath.getParent(), newFileName, entriesWithoutExcludedKeysAsString);
-            // -----------------------------------
+            Map<String, Integer> fileSummary = new LinkedHashMap<>();
+            fileSummary.put("missing", baseKeys.length - presentBaseKeys.cardinality());
+            fileSummary.put("extra", fileKeys.getValue().getValue().size());
+            summaryByFile.put(fileKeys.getKey(), fileSummary);
 
         }
 
+        Map<String, List<String>> missingFilesByKey = new LinkedHashMap<>();
+        for (int i = 0; i < baseKeys.length; i++) {
+            if (missingFilesByOrdinal[i] != null) {
+                missingFilesByKey.put(baseKeys[i], missingFilesByOrdinal[i]);
+            }
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("files", summaryByFile);
+        report.put("missing", missingFilesByKey);
+        report.put("extra", extraFilesByKey);
+
+        Path baseFilePathObj = Paths.get(baseFilePath);
+        String reportFileName = getResultFileName(baseFilePathObj, "matrix");
+        writeEntriesToFile(baseFilePathObj.getParent(), reportFileName, report);
+        for (String targetFilePath : keysByFile.keySet()) {
+            summary.recordResult(targetFilePath, resolveFilePath(baseFilePathObj.getParent(), reportFileName));
+        }
+
         System.out.println("Done!");
 
     }
 
-    private static void mergeFiles(String... filesPaths) throws IOException {
+    private static boolean isSameFile(String firstFilePath, String secondFilePath) {
+        try {
+            return Files.isSameFile(Paths.get(firstFilePath), Paths.get(secondFilePath));
+        } catch (IOException e) {
+            return false;
+        }
+    }
 
-        initGlobalObjectsIfNeeded();
+    private static List<Map<String, JsonNode>> readDifferingEntries(String firstFilePath, String secondFilePath) {
+
+        MerkleComparator comparator = new MerkleComparator(reader, flattener);
+        List<String> filesPaths = Arrays.asList(firstFilePath, secondFilePath);
+
+        System.out.println("Hashing subtrees...");
+        stats.startPhase("hash");
+        List<MerkleComparator.SubtreeHashes> hashes = new ArrayList<>(taskRunner.runForEachFile(filesPaths, stats.track(filePath -> {
+            long startNanos = System.nanoTime();
+            MerkleComparator.SubtreeHashes subtreeHashes = comparator.getHashes(Paths.get(filePath), useMerkleSidecars);
+            stats.recordRead(startNanos, Files.size(Paths.get(filePath)), 0);
+            return subtreeHashes;
+        })).values());
+
+        MerkleComparator.SubtreeHashes firstHashes = hashes.get(0);
+        MerkleComparator.SubtreeHashes secondHashes = hashes.get(hashes.size() - 1);
+
+        System.out.println("Reading differing subtrees...");
+        stats.startPhase("read");
+        Map<String, RadixTreeMap<JsonNode>> plainMapsByFile = taskRunner.runForEachFile(filesPaths, stats.track(filePath -> {
+            long startNanos = System.nanoTime();
+            RadixTreeMap<JsonNode> plainMap = filePath.equals(firstFilePath)
+                    ? comparator.flattenDifferingEntries(firstHashes, secondHashes)
+                    : comparator.flattenDifferingEntries(secondHashes, firstHashes);
+            // the file itself was read while hashing, only its leaf values are decoded here
+            stats.recordRead(startNanos, 0, plainMap.size());
+            return plainMap;
+        }));
+
+        return Arrays.asList(plainMapsByFile.get(firstFilePath), plainMapsByFile.get(secondFilePath));
+
+    }
 
-        System.out.println("Merging files...");
+    private static void removeExcludedKeysFromEachFile(String excludedKeysFilePath, List<String> targetFilesPaths) throws IOException {
 
-        Map<String, JsonNode> mergedMap = new TreeMap<>();
+        initGlobalObjectsIfNeeded();
 
-        // TODO: parallelize this section
-        // -----------------------------------
-        for (String filePath : filesPaths) {
-            Map<String, JsonNode> plainMap = readJsonFileToPlainMap(filePath);
-            mergedMap.putAll(plainMap);
+        System.out.println("Parsing input files...");
+        stats.startPhase("read");
+        Set<String> keysToExclude = new LinkedHashSet<>();
+        List<String> prefixesToExclude = new ArrayList<>();
+        for (String keyToExclude : readJsonFileToPlainMap(excludedKeysFilePath).keySet()) {
+            if (keyToExclude.endsWith(SUBTREE_WILDCARD)) {
+                // "a.b.*" excludes everything under "a.b"
+                prefixesToExclude.add(keyToExclude.substring(0, keyToExclude.length() - 1));
+            } else {
+                keysToExclude.add(keyToExclude);
+            }
         }
-        // -----------------------------------
 
-        System.out.println("Writing files to the disk...");
+        System.out.println(MessageFormat.format("Removing entries from {0} file(s)...", targetFilesPaths.size()));
+        stats.startPhase("cleanup");
+        StreamingCleanupFilter cleanupFilter = keepLayout
+                ? new StreamingCleanupFilter(reader, mapper, flattener, outputFormat, keysToExclude, prefixesToExclude)
+                : null;
+        taskRunner.runForEachFile(targetFilesPaths, stats.track(summary.track(filePath -> {
 
-        String mergedEntriesAsString = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(mergedMap);
-        Path targetFilePath = Paths.get(filesPaths[0]).getParent();
-        writeToFile(targetFilePath, "merged.json", mergedEntriesAsString);
+            Path targetFilePath = Paths.get(filePath);
+            String newFileName = getResultFileName(targetFilePath, "clean");
+            Path cleanFilePath = resolveFilePath(targetFilePath.getParent(), newFileName);
+
+            if (cleanupFilter != null) {
+                long startNanos = System.nanoTime();
+                cleanupFilter.filter(targetFilePath, cleanFilePath);
+                stats.recordStreamed(startNanos, Files.size(targetFilePath), Files.size(cleanFilePath));
+                summary.recordResult(filePath, cleanFilePath);
+                return null;
+            }
+
+            LeafValueArena arena = new LeafValueArena();
+            RadixTreeMap<Long> compactPlainMap = readJsonFileToCompactMap(filePath, arena);
+
+            for (String keyToExclude : keysToExclude) {
+                compactPlainMap.remove(keyToExclude);
+            }
+            for (String prefixToExclude : prefixesToExclude) {
+                compactPlainMap.removeWithPrefix(prefixToExclude);
+            }
+
+            writeCompactEntriesToFile(targetFilePath.getParent(), newFileName, compactPlainMap, arena);
+            summary.recordResult(filePath, cleanFilePath);
+
+            return null;
+
+        })));
+
+        System.out.println("Done!");
+
+    }
+
+    private static void mergeFiles(Path targetDirectoryPath, String... filesPaths) throws IOException {
+
+        initGlobalObjectsIfNeeded();
+
+        System.out.println("Sorting input files...");
+        stats.startPhase("sort");
+
+        List<ExternalSorter> sorters = Collections.synchronizedList(new ArrayList<>());
+        // same file passed twice gives the same entries, so sorting it once is enough
+        Set<String> uniqueFilePaths = new LinkedHashSet<>(Arrays.asList(filesPaths));
+        // half of the budget is for the sorters of the workers, the other half for the sorted files which stay
+        // in memory until they're merged (the rest are spilled), so together they never take more than the budget
+        long maxKeptBytes = Math.max(1, getMemoryBudgetBytes() / 2);
+        long sorterMemoryBudgetBytes = getSorterMemoryBudgetBytes(maxKeptBytes, uniqueFilePaths.size());
+        AtomicLong keptBytes = new AtomicLong();
+        try {
+
+            Map<String, ExternalSorter> sortersByFile = taskRunner.runForEachFile(uniqueFilePaths, stats.track(summary.track(filePath -> {
+
+                ExternalSorter sorter = new ExternalSorter(mapper, sorterMemoryBudgetBytes, spillDirectory,
+                        ExternalSorter.DEFAULT_MAX_MERGED_RUNS);
+                sorters.add(sorter);
+
+                flattenFile(filePath, sorter::add);
+                // while merging only the current entry of each spilled file stays in memory
+                if (sorter.getRunsCount() > 0 || !tryReserve(keptBytes, sorter.getBufferedBytes(), maxKeptBytes)) {
+                    sorter.flush();
+                }
+
+                return sorter;
+
+            })));
+
+            System.out.println("Merging files...");
+            stats.startPhase("merge");
+
+            List<KWayMerger.EntryCursor<JsonNode>> cursors = new ArrayList<>();
+            try {
+                for (String filePath : filesPaths) {
+                    cursors.add(sortersByFile.get(filePath).openSortedCursor());
+                }
+            } catch (IOException e) {
+                new KWayMerger<>(cursors).close();
+                throw e;
+            }
+
+            Path mergedFilePath = resolveFilePath(targetDirectoryPath, "merged" + outputFormat.getFileExtension());
+            String conflictsFileName = "merged (conflicts)" + outputFormat.getFileExtension();
+            Path conflictsFilePath = resolveFilePath(targetDirectoryPath, conflictsFileName);
+            long conflictsCount = 0;
+            long mergedEntriesCount = 0;
+            long writeStartNanos = System.nanoTime();
+
+            // the conflicts are streamed too, their file is only moved in place if there are any
+            try (KWayMerger<JsonNode> merger = new KWayMerger<>(cursors);
+                 JsonEntriesWriter writer = JsonEntriesWriter.open(mapper, mergedFilePath, outputFormat);
+                 JsonEntriesWriter conflictsWriter = reportConflicts
+                         ? JsonEntriesWriter.open(mapper, conflictsFilePath, outputFormat)
+                         : null) {
+
+                while (merger.nextGroup()) {
+
+                    int groupSize = merger.getGroupSize();
+                    if (groupSize > 1 && conflictsWriter != null) {
+                        ObjectNode conflict = findConflict(merger, filesPaths);
+                        if (conflict != null) {
+                            conflictsWriter.writeEntry(merger.getKey(), conflict);
+                            conflictsCount++;
+                        }
+                    }
+
+                    JsonNode value = conflictPolicy == ConflictPolicy.FIRST_WINS
+                            ? merger.getValue(0)
+                            : merger.getValue(groupSize - 1);
+                    writer.writeEntry(merger.getKey(), value);
+                    mergedEntriesCount++;
+
+                }
+
+                if (conflictsCount > 0) {
+                    System.out.println(MessageFormat.format("{0} conflicting key(s) found, writing conflicts report...",
+                            conflictsCount));
+                    long conflictsWriteStartNanos = System.nanoTime();
+                    conflictsWriter.commit();
+                    stats.recordWrite(conflictsWriteStartNanos, Files.size(conflictsFilePath), conflictsCount);
+                    for (String filePath : uniqueFilePaths) {
+                        summary.recordResult(filePath, conflictsFilePath);
+                    }
+                    if (conflictPolicy == ConflictPolicy.FAIL) {
+                        throw new RuntimeException(MessageFormat.format(
+                                "Cannot merge files with {0} conflicting key(s), see \"{1}\"",
+                                conflictsCount, conflictsFileName
+                        ));
+                    }
+                }
+
+                System.out.println("Writing files to the disk...");
+                stats.startPhase("write");
+                writer.commit();
+                stats.recordWrite(writeStartNanos, Files.size(mergedFilePath), mergedEntriesCount);
+                for (String filePath : uniqueFilePaths) {
+                    summary.recordResult(filePath, mergedFilePath);
+                }
+
+            }
+
+        } finally {
+            for (ExternalSorter sorter : sorters) {
+                sorter.close();
+            }
+        }
 
         System.out.println("Done!");
 
     }
 
+    /**
+     * Budget of the whole run, {@code -memory} or the default one, which is shared by all the worker threads.
+     */
+    private static long getMemoryBudgetBytes() {
+        return memoryBudgetBytes > 0 ? memoryBudgetBytes : ExternalSorter.getDefaultMemoryBudgetBytes(1);
+    }
+
+    private static long getSorterMemoryBudgetBytes(long sortersMemoryBudgetBytes, int filesCount) {
+        int concurrentSortersCount = Math.max(1, Math.min(taskRunner.getThreads(), filesCount));
+        return Math.max(1, sortersMemoryBudgetBytes / concurrentSortersCount);
+    }
+
+    private static boolean tryReserve(AtomicLong reservedBytes, long bytes, long maxReservedBytes) {
+
+        long currentBytes;
+        do {
+            currentBytes = reservedBytes.get();
+            if (currentBytes + bytes > maxReservedBytes) {
+                return false;
+            }
+        } while (!reservedBytes.compareAndSet(currentBytes, currentBytes + bytes));
+
+        return true;
+
+    }
+
+    private static ObjectNode findConflict(KWayMerger<JsonNode> merger, String[] filesPaths) {
+
+        JsonNode firstValue = merger.getValue(0);
+        boolean hasDifferentValues = false;
+
+        for (int i = 1; i < merger.getGroupSize(); i++) {
+            if (!firstValue.equals(merger.getValue(i))) {
+                hasDifferentValues = true;
+                break;
+            }
+        }
+
+        if (!hasDifferentValues) {
+            return null;
+        }
+
+        ObjectNode conflict = JsonNodeFactory.instance.objectNode();
+        for (int i = 0; i < merger.getGroupSize(); i++) {
+            conflict.set(filesPaths[merger.getSourceIndex(i)], merger.getValue(i));
+        }
+
+        return conflict;
+
+    }
+
     @SafeVarargs
-    private static void findInclusions(String sourceFilePath, Pair<String, String>... sets) throws IOException {
+    private static void findInclusions(List<String> sourceFilesPaths, List<String> indexFilesPaths,
+                                       Map.Entry<String, String>... sets) throws IOException {
 
         initGlobalObjectsIfNeeded();
 
         System.out.println("Finding inclusions...");
+        stats.startPhase("read");
 
-        Set<String> sourceKeySet = readJsonFileToPlainMap(sourceFilePath).keySet();
-        Map<String, String> resultMap = new TreeMap<>();
+        List<InclusionIndex> indexes = new ArrayList<>();
+        try {
 
-        // TODO: parallelize this section
-        // -----------------------------------
-        for (Pair<String, String> set : sets) {
+            for (String indexFilePath : indexFilesPaths) {
 
-            System.out.println(MessageFormat.format("Checking \"{0}\" set...", set.getKey()));
+                System.out.println(MessageFormat.format("Checking \"{0}\" index...", indexFilePath));
 
-            Pair<String, Set<String>> namedSetPlainMap = new ImmutablePair<>(set.getKey(), readJsonFileToPlainMap(set.getValue()).keySet());
+                InclusionIndex index = InclusionIndex.open(Paths.get(indexFilePath));
+                indexes.add(index);
 
-            for (String currentSourceKey : sourceKeySet) {
-                if (namedSetPlainMap.getValue().contains(currentSourceKey)) {
-                    resultMap.put(currentSourceKey, namedSetPlainMap.getKey());
+                for (String outdatedSetName : index.getOutdatedSetNames()) {
+                    System.out.println(MessageFormat.format(
+                            "Warning: \"{0}\" set has been changed since the index was built, consider rebuilding it",
+                            outdatedSetName
+                    ));
                 }
+
             }
 
-        }
-        // -----------------------------------
+            Set<String> uniqueSetFilePaths = Arrays.stream(sets)
+                    .map(Map.Entry::getValue)
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+            Map<String, RadixTreeMap<JsonNode>> plainMapsByFile =
+                    taskRunner.runForEachFile(uniqueSetFilePaths, stats.track(Main::readJsonFileToPlainMap));
+
+            // "a.b.*" in a set includes everything under "a.b"
+            List<RadixTreeMap<Boolean>> setsPrefixes = new ArrayList<>();
+            for (Map.Entry<String, String> set : sets) {
+                RadixTreeMap<Boolean> setPrefixes = new RadixTreeMap<>();
+                for (String setKey : plainMapsByFile.get(set.getValue()).keySet()) {
+                    if (setKey.endsWith(SUBTREE_WILDCARD)) {
+                        setPrefixes.put(setKey.substring(0, setKey.length() - 1), Boolean.TRUE);
+                    }
+                }
+                setsPrefixes.add(setPrefixes);
+            }
+
+            System.out.println(MessageFormat.format("Checking {0} source file(s)...", sourceFilesPaths.size()));
+            stats.startPhase("find");
+
+            taskRunner.runForEachFile(sourceFilesPaths, stats.track(summary.track(sourceFilePath -> {
+
+                Set<String> sourceKeySet = readJsonFileToPlainMap(sourceFilePath).keySet();
+                Map<String, List<String>> resultMap = new TreeMap<>();
+
+                for (InclusionIndex index : indexes) {
+                    for (String currentSourceKey : sourceKeySet) {
+                        for (String setName : index.findSetNames(currentSourceKey)) {
+                            addInclusion(resultMap, currentSourceKey, setName);
+                        }
+                    }
+                }
 
-        System.out.println("Completed, writing result file to disk...");
+                for (int i = 0; i < sets.length; i++) {
+                    RadixTreeMap<JsonNode> setPlainMap = plainMapsByFile.get(sets[i].getValue());
+                    for (String currentSourceKey : sourceKeySet) {
+                        if (setPlainMap.containsKey(currentSourceKey) || setsPrefixes.get(i).containsPrefixOf(currentSourceKey)) {
+                            addInclusion(resultMap, currentSourceKey, sets[i].getKey());
+                        }
+                    }
+                }
+
+                Path targetFilePath = Paths.get(sourceFilePath);
+                String newFileName = getResultFileName(targetFilePath, "inclusions");
+                writeEntriesToFile(targetFilePath.getParent(), newFileName, resultMap);
+                summary.recordResult(sourceFilePath, resolveFilePath(targetFilePath.getParent(), newFileName));
+
+                return null;
 
-        String resultJsonAsString = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(resultMap);
-        Path targetFilePath = Paths.get(sourceFilePath);
-        String newFileName = targetFilePath.getFileName().toString();
-        newFileName = newFileName.substring(0, newFileName.lastIndexOf(".json")) + " (inclusions).json";
-        writeToFile(targetFilePath.getParent(), newFileName, resultJsonAsString);
+            })));
+
+        } finally {
+            for (InclusionIndex index : indexes) {
+                index.close();
+            }
+        }
 
         System.out.println("Done!");
 
     }
 
-    public static Map<String, JsonNode> getSortedPlainMapOfNodes(JsonNode rootNode) {
+    private static void addInclusion(Map<String, List<String>> resultMap, String key, String setName) {
+        List<String> setNames = resultMap.computeIfAbsent(key, k -> new ArrayList<>(1));
+        if (!setNames.contains(setName)) {
+            setNames.add(setName);
+        }
+    }
+
+    private static void buildInclusionIndex(String indexFilePath, List<Map.Entry<String, String>> sets) throws IOException {
+
+        initGlobalObjectsIfNeeded();
+
+        System.out.println("Parsing sets...");
+        stats.startPhase("read");
+
+        Set<String> uniqueSetFilePaths = sets.stream()
+                .map(Map.Entry::getValue)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        Map<String, RadixTreeMap<JsonNode>> plainMapsByFile =
+                taskRunner.runForEachFile(uniqueSetFilePaths, stats.track(summary.track(Main::readJsonFileToPlainMap)));
 
-        Map<String, JsonNode> result = new HashMap<>();
+        System.out.println("Writing index file to disk...");
+        stats.startPhase("write");
 
-        if (!rootNode.isObject() || rootNode.isEmpty()) {
-            return result;
+        long writeStartNanos = System.nanoTime();
+        InclusionIndex.write(
+                Paths.get(indexFilePath),
+                sets.stream().map(Map.Entry::getKey).collect(Collectors.toList()),
+                sets.stream().map(Map.Entry::getValue).collect(Collectors.toList()),
+                sets.stream().map(set -> plainMapsByFile.get(set.getValue()).keySet()).collect(Collectors.toList())
+        );
+        stats.recordWrite(writeStartNanos, Files.size(Paths.get(indexFilePath)), 0);
+        for (String setFilePath : uniqueSetFilePaths) {
+            summary.recordResult(setFilePath, Paths.get(indexFilePath));
         }
 
-        Iterator<Map.Entry<String, JsonNode>> fieldsIterator = rootNode.fields();
+        System.out.println("Done!");
 
-        while (fieldsIterator.hasNext()) {
-            Map.Entry<String, JsonNode> fieldEntry = fieldsIterator.next();
-            result.putAll(getChildNodesPlainMap(fieldEntry.getKey(), fieldEntry.getValue(), null));
+    }
+
+    private static Map.Entry<String, String> parseNamedSet(String argument) {
+
+        String[] setNameAndFilePath = argument.split("=", 2);
+        if (setNameAndFilePath.length != 2 || setNameAndFilePath[0].isEmpty()) {
+            throw new IllegalArgumentException(MessageFormat.format("Invalid named set: {0}", argument));
         }
 
-        result = result.entrySet().stream()
-                .sorted(Map.Entry.comparingByKey())
-                .collect(
-                        Collectors.toMap(
-                                Map.Entry::getKey,
-                                Map.Entry::getValue,
-                                (oldValue, newValue) -> newValue,
-                                LinkedHashMap::new
-                        )
-                );
+        return new AbstractMap.SimpleImmutableEntry<>(setNameAndFilePath[0], setNameAndFilePath[1]);
+
+    }
+
+    /**
+     * A set of a directory or a glob stands for a set per file, named after the path of the file
+     * relative to it, like "features/basket/en.json" for "features=src/features".
+     */
+    private static List<Map.Entry<String, String>> expandNamedSet(Map.Entry<String, String> set) throws IOException {
+
+        if (!InputFiles.isExpandable(set.getValue())) {
+            return Collections.singletonList(set);
+        }
+
+        List<Map.Entry<String, String>> sets = new ArrayList<>();
+        for (Map.Entry<String, String> setFile : InputFiles.expandWithRelativePaths(set.getValue(), outputFilesPaths,
+                filePath -> Collections.emptyList()).entrySet()) {
+            sets.add(new AbstractMap.SimpleImmutableEntry<>(set.getKey() + "/" + setFile.getKey(), setFile.getValue()));
+        }
+
+        return sets;
+
+    }
+
+    public static RadixTreeMap<JsonNode> getSortedPlainMapOfNodes(JsonNode rootNode) {
+
+        initGlobalObjectsIfNeeded();
+
+        // the keys of the radix tree are always iterated in the sorted order, so no separate sorting is needed
+        RadixTreeMap<JsonNode> result = new RadixTreeMap<>();
+        flattener.flatten(rootNode, result::put);
 
         return result;
 
     }
 
-    private static Map<String, JsonNode> getChildNodesPlainMap(String nodeName, JsonNode node, Map<String, JsonNode> accumulator) {
+    public static Map<String, JsonNode>[] findUniqueEntries(Map<String, JsonNode> firstMapOfNodes,
+                                                            Map<String, JsonNode> secondMapOfNodes) {
+        return findUniqueEntries(firstMapOfNodes, secondMapOfNodes, false);
+    }
+
+    /**
+     * Merge-joins the keys of both maps in their natural (case-sensitive) order. The first two of the returned maps
+     * contain the entries unique for each of the maps, the third one (if requested) contains the keys that are present
+     * in both maps, but have different values.
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, JsonNode>[] findUniqueEntries(Map<String, JsonNode> firstMapOfNodes,
+                                                            Map<String, JsonNode> secondMapOfNodes,
+                                                            boolean findChangedValues) {
+
+        String[] firstKeys = new String[firstMapOfNodes.size()];
+        JsonNode[] firstValues = new JsonNode[firstKeys.length];
+        copyToSortedArrays(firstMapOfNodes, firstKeys, firstValues);
+
+        String[] secondKeys = new String[secondMapOfNodes.size()];
+        JsonNode[] secondValues = new JsonNode[secondKeys.length];
+        copyToSortedArrays(secondMapOfNodes, secondKeys, secondValues);
+
+        Map<String, JsonNode> firstMapOfUniqueNodes = new LinkedHashMap<>();
+        Map<String, JsonNode> secondMapOfUniqueNodes = new LinkedHashMap<>();
+        Map<String, JsonNode> mapOfChangedNodes = new LinkedHashMap<>();
+
+        int i = 0;
+        int j = 0;
+
+        while (i < firstKeys.length && j < secondKeys.length) {
+
+            int comparisonResult = firstKeys[i].compareTo(secondKeys[j]);
+
+            if (comparisonResult == 0) {
+                if (findChangedValues && !firstValues[i].equals(secondValues[j])) {
+                    ObjectNode changedValues = JsonNodeFactory.instance.objectNode();
+                    changedValues.set("first", firstValues[i]);
+                    changedValues.set("second", secondValues[j]);
+                    mapOfChangedNodes.put(firstKeys[i], changedValues);
+                }
+                i++;
+                j++;
+            } else if (comparisonResult < 0) {
+                firstMapOfUniqueNodes.put(firstKeys[i], firstValues[i]);
+                i++;
+            } else {
+                secondMapOfUniqueNodes.put(secondKeys[j], secondValues[j]);
+                j++;
+            }
 
-        if (accumulator == null) {
-            accumulator = new HashMap<>();
         }
 
-        if (node.isObject()) {
+        for (; i < firstKeys.length; i++) {
+            firstMapOfUniqueNodes.put(firstKeys[i], firstValues[i]);
+        }
+        for (; j < secondKeys.length; j++) {
+            secondMapOfUniqueNodes.put(secondKeys[j], secondValues[j]);
+        }
 
-            Iterator<Map.Entry<String, JsonNode>> childNodesIterator = node.fields();
+        return (Map<String, JsonNode>[]) new Map<?, ?>[] {firstMapOfUniqueNodes, secondMapOfUniqueNodes, mapOfChangedNodes};
 
-            while (childNodesIterator.hasNext()) {
+    }
 
-                Map.Entry<String, JsonNode> childNode = childNodesIterator.next();
-                String childNodeName = childNode.getKey();
-                childNodeName = nodeName + "." + childNodeName;
-                JsonNode childNodeValue = childNode.getValue();
+    private static void copyToSortedArrays(Map<String, JsonNode> mapOfNodes, String[] keys, JsonNode[] values) {
 
-                getChildNodesPlainMap(childNodeName, childNodeValue, accumulator);
+        boolean isSorted = true;
+        int i = 0;
 
+        for (Map.Entry<String, JsonNode> entry : mapOfNodes.entrySet()) {
+            keys[i] = entry.getKey();
+            values[i] = entry.getValue();
+            if (i > 0 && keys[i - 1].compareTo(keys[i]) > 0) {
+                isSorted = false;
             }
+            i++;
+        }
 
-        } else {
-            accumulator.put(nodeName, node);
+        if (!isSorted) {
+            // only happens for maps that weren't built by the flattener, so sorting the keys once is fine
+            Arrays.sort(keys);
+            for (int k = 0; k < keys.length; k++) {
+                values[k] = mapOfNodes.get(keys[k]);
+            }
         }
 
-        return accumulator;
+    }
 
+    private static void resetOptions() {
+        taskRunner = new FileTaskRunner(1);
+        compareValues = false;
+        flattenArrays = false;
+        escapeKeyDots = false;
+        outputFormat = DataFormat.PRETTY;
+        keepLayout = false;
+        useMerkleCompare = false;
+        useMerkleSidecars = false;
+        memoryBudgetBytes = 0;
+        spillDirectory = null;
+        conflictPolicy = ConflictPolicy.LAST_WINS;
+        reportConflicts = false;
+        cacheDirectory = null;
+        cacheSizeBytes = 1024L * 1024 * 1024;
+        parseCache = null;
     }
 
-    @SuppressWarnings("unchecked")
-    private static Map<String, JsonNode>[] findUniqueEntries(Map<String, JsonNode> firstMapOfNodes,
-                                                             Map<String, JsonNode> secondMapOfNodes) {
+    static ObjectMapper getObjectMapper() {
 
-        LinkedList<Map.Entry<String, JsonNode>> firstListOfNodes = new LinkedList<>(firstMapOfNodes.entrySet());
-        ListIterator<Map.Entry<String, JsonNode>> firstListIterator = firstListOfNodes.listIterator();
+        initGlobalObjectsIfNeeded();
 
-        LinkedList<Map.Entry<String, JsonNode>> secondListOfNodes = new LinkedList<>(secondMapOfNodes.entrySet());
-        ListIterator<Map.Entry<String, JsonNode>> secondListIterator = secondListOfNodes.listIterator();
+        return mapper;
 
-        while (firstListIterator.hasNext() && secondListIterator.hasNext()) {
+    }
 
-            String firstKeyToCompare = firstListIterator.next().getKey();
-            String secondKeyToCompare = secondListIterator.next().getKey();
+    static void keepParsedFilesInMemory(long maxBytes) {
+        parsedFilesMemoryCache = maxBytes > 0 ? new ParsedFilesMemoryCache(maxBytes) : null;
+    }
 
-            if (firstKeyToCompare.equalsIgnoreCase(secondKeyToCompare)) {
-                firstListIterator.remove();
-                secondListIterator.remove();
-            } else if (firstKeyToCompare.compareToIgnoreCase(secondKeyToCompare) < 0) {
-                // firstKeyToCompare is unique
-                secondListIterator.previous();
-            } else {
-                // secondKeyToCompare is unique
-                firstListIterator.previous();
-            }
+    private static String extractFlag(List<String> argsList, ProgramFlags flag) {
 
+        int flagIndex = -1;
+        for (int i = 0; i < argsList.size(); i++) {
+            if (flag.getName().equalsIgnoreCase(argsList.get(i))) {
+                flagIndex = i;
+                break;
+            }
         }
 
-        LinkedHashMap<String, JsonNode> firstMapOfUniqueNodes = firstListOfNodes.stream()
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        Map.Entry::getValue,
-                        (oldValue, newValue) -> newValue,
-                        LinkedHashMap::new
-                ));
+        if (flagIndex < 0) {
+            return null;
+        }
 
-        LinkedHashMap<String, JsonNode> secondMapOfUniqueNodes = secondListOfNodes.stream()
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        Map.Entry::getValue,
-                        (oldValue, newValue) -> newValue,
-                        LinkedHashMap::new
-                ));
+        argsList.remove(flagIndex);
+        if (!flag.isWithValue()) {
+            return flag.getName();
+        }
+        if (flagIndex >= argsList.size()) {
+            throw new IllegalArgumentException(MessageFormat.format("No value for the flag: {0}", flag.getName()));
+        }
 
-        return (Map<String, JsonNode>[]) new Map<?, ?>[] {firstMapOfUniqueNodes, secondMapOfUniqueNodes};
+        return argsList.remove(flagIndex);
 
     }
 
@@ -365,43 +1156,213 @@ public class Main {
         if (reader == null) {
             reader = mapper.reader().withFeatures(JsonReadFeature.ALLOW_TRAILING_COMMA);
         }
+        if (flattener != null && (flattener.isFlatteningArrays() != flattenArrays
+                || flattener.isEscapingKeyDots() != escapeKeyDots)) {
+            // the server keeps the parsed files, which were flattened the other way
+            flattener = null;
+            if (parsedFilesMemoryCache != null) {
+                parsedFilesMemoryCache.clear();
+            }
+        }
+        if (flattener == null) {
+            flattener = new JsonFlattener(reader, flattenArrays, escapeKeyDots);
+        }
+        if (parseCache == null && cacheDirectory != null) {
+            try {
+                parseCache = new ParseCache(cacheDirectory, cacheSizeBytes, flattener);
+            } catch (IOException e) {
+                throw new UncheckedIOException(
+                        MessageFormat.format("Cannot use the cache directory: {0}", cacheDirectory), e
+                );
+            }
+        }
     }
 
     public static JsonNode readJsonTreeByFilePath(String path) throws IOException {
 
         initGlobalObjectsIfNeeded();
 
+        Path filePath = Paths.get(path).toAbsolutePath();
+        if (DataFormat.detect(filePath) == DataFormat.NDJSON) {
+            // the records are flat, so they make an object of the flattened entries
+            ObjectNode rootNode = mapper.createObjectNode();
+            flattener.flatten(filePath, rootNode::set);
+            return rootNode;
+        }
+
         JsonNode rootNode;
-        try (FileInputStream inputStream = new FileInputStream(Paths.get(path).toAbsolutePath().toString())) {
-            rootNode = reader.readTree(inputStream);
+        try (JsonParser parser = DataFormat.createParser(reader, filePath)) {
+            rootNode = reader.readTree(parser);
         }
 
         return rootNode;
 
     }
 
-    private static Map<String, JsonNode> readJsonFileToPlainMap(String filePath) throws IOException {
+    /**
+     * The map can be shared with the server's cache, so it must not be modified.
+     */
+    private static RadixTreeMap<JsonNode> readJsonFileToPlainMap(String filePath) throws IOException {
+
+        initGlobalObjectsIfNeeded();
+
+        long startNanos = System.nanoTime();
+        RadixTreeMap<JsonNode> plainMap = parsedFilesMemoryCache != null
+                ? parsedFilesMemoryCache.flattenToSortedMap(Paths.get(filePath), Main::parseJsonFileToPlainMap)
+                : parseJsonFileToPlainMap(Paths.get(filePath));
+        stats.recordRead(startNanos, Files.size(Paths.get(filePath)), plainMap.size());
+
+        return plainMap;
+
+    }
+
+    /**
+     * Same as {@link #readJsonFileToPlainMap(String)}, but the leaf values are kept in the arena,
+     * for the commands which only need to write the entries back.
+     */
+    private static RadixTreeMap<Long> readJsonFileToCompactMap(String filePath, LeafValueArena arena) throws IOException {
+
+        initGlobalObjectsIfNeeded();
+
+        RadixTreeMap<Long> compactPlainMap = new RadixTreeMap<>();
+
+        if (parseCache != null || parsedFilesMemoryCache != null) {
+            // the cached entries are JsonNode objects already
+            for (Map.Entry<String, JsonNode> entry : readJsonFileToPlainMap(filePath).entrySet()) {
+                compactPlainMap.put(entry.getKey(), arena.add(entry.getValue()));
+            }
+            return compactPlainMap;
+        }
+
+        long startNanos = System.nanoTime();
+        compactPlainMap = flattener.flattenToCompactMap(Paths.get(filePath), arena);
+        stats.recordRead(startNanos, Files.size(Paths.get(filePath)), compactPlainMap.size());
+
+        return compactPlainMap;
+
+    }
+
+    private static RadixTreeMap<JsonNode> parseJsonFileToPlainMap(Path filePath) throws IOException {
+
+        if (parseCache != null) {
+            return parseCache.flattenToSortedMap(filePath);
+        }
+
+        return flattener.flattenToSortedMap(filePath);
+
+    }
+
+    private static void flattenFile(String filePath, JsonFlattener.EntryConsumer consumer) throws IOException {
 
         initGlobalObjectsIfNeeded();
 
-        JsonNode rootJsonNode = readJsonTreeByFilePath(filePath);
-        return getSortedPlainMapOfNodes(rootJsonNode);
+        if (parsedFilesMemoryCache != null && memoryBudgetBytes == 0) {
+            for (Map.Entry<String, JsonNode> entry : readJsonFileToPlainMap(filePath).entrySet()) {
+                consumer.accept(entry.getKey(), entry.getValue());
+            }
+            return;
+        }
+
+        long startNanos = System.nanoTime();
+        long[] entriesCount = new long[1];
+        JsonFlattener.EntryConsumer countingConsumer = (key, value) -> {
+            entriesCount[0]++;
+            consumer.accept(key, value);
+        };
+
+        if (parseCache != null) {
+            parseCache.flatten(Paths.get(filePath), countingConsumer);
+        } else {
+            flattener.flatten(Paths.get(filePath), countingConsumer);
+        }
+
+        stats.recordRead(startNanos, Files.size(Paths.get(filePath)), entriesCount[0]);
 
     }
 
     public static void writeToFile(Path pathToParentDir, String newFileName, String content) throws IOException {
 
-        BufferedWriter writer = new BufferedWriter(
-                new OutputStreamWriter(
-                        new FileOutputStream(pathToParentDir.toString() + "/" + newFileName, false),
-                        StandardCharsets.UTF_8
-                )
-        );
+        long startNanos = System.nanoTime();
+        byte[] contentBytes = content.getBytes(StandardCharsets.UTF_8);
+        JsonEntriesWriter.writeContent(resolveFilePath(pathToParentDir, newFileName), contentBytes);
+        stats.recordWrite(startNanos, contentBytes.length, 0);
+
+    }
+
+    public static void writeEntriesToFile(Path pathToParentDir, String newFileName, Map<String, ?> entries) throws IOException {
+
+        initGlobalObjectsIfNeeded();
+
+        long startNanos = System.nanoTime();
+        Path targetFilePath = resolveFilePath(pathToParentDir, newFileName);
+        JsonEntriesWriter.writeEntries(mapper, targetFilePath, entries, outputFormat);
+        stats.recordWrite(startNanos, Files.size(targetFilePath), entries.size());
+
+    }
+
+    private static void writeCompactEntriesToFile(Path pathToParentDir, String newFileName,
+                                                  RadixTreeMap<Long> compactEntries, LeafValueArena arena) throws IOException {
+
+        long startNanos = System.nanoTime();
+        Path targetFilePath = resolveFilePath(pathToParentDir, newFileName);
 
-        writer.write(content);
-        writer.flush();
-        writer.close();
+        try (JsonEntriesWriter writer = JsonEntriesWriter.open(mapper, targetFilePath, outputFormat)) {
+            for (Map.Entry<String, Long> entry : compactEntries.entrySet()) {
+                writer.writeEntry(entry.getKey(), arena, entry.getValue());
+            }
+            writer.commit();
+        }
+
+        stats.recordWrite(startNanos, Files.size(targetFilePath), compactEntries.size());
+
+    }
+
+    private static void writeSortedEntriesToFile(Path pathToParentDir, String newFileName, ExternalSorter sorter) throws IOException {
+
+        long startNanos = System.nanoTime();
+        Path targetFilePath = resolveFilePath(pathToParentDir, newFileName);
+        long[] entriesCount = new long[1];
+
+        try (JsonEntriesWriter writer = JsonEntriesWriter.open(mapper, targetFilePath, outputFormat)) {
+            sorter.forEachSorted((key, value) -> {
+                entriesCount[0]++;
+                writer.writeEntry(key, value);
+            });
+            writer.commit();
+        }
+
+        stats.recordWrite(startNanos, Files.size(targetFilePath), entriesCount[0]);
+
+    }
+
+    /**
+     * Result files of an input file in any of the formats, so the results of an earlier run
+     * in another format aren't taken for inputs either.
+     */
+    private static Function<Path, List<Path>> resultFilesOf(String... resultNames) {
+        return filePath -> {
+            String baseFileName = DataFormat.removeKnownExtension(filePath.getFileName().toString());
+            List<Path> resultFilesPaths = new ArrayList<>();
+            for (String resultName : resultNames) {
+                for (String extension : getFileExtensions()) {
+                    resultFilesPaths.add(resolveFilePath(filePath.getParent(), baseFileName + " (" + resultName + ")" + extension));
+                }
+            }
+            return resultFilesPaths;
+        };
+    }
+
+    private static List<String> getFileExtensions() {
+        return Arrays.stream(DataFormat.values()).map(DataFormat::getFileExtension).distinct().collect(Collectors.toList());
+    }
+
+    private static String getResultFileName(Path filePath, String resultName) {
+        String fileName = filePath.getFileName().toString();
+        return DataFormat.removeKnownExtension(fileName) + " (" + resultName + ")" + outputFormat.getFileExtension();
+    }
 
+    private static Path resolveFilePath(Path pathToParentDir, String fileName) {
+        return pathToParentDir == null ? Paths.get(fileName) : pathToParentDir.resolve(fileName);
     }
 
 }
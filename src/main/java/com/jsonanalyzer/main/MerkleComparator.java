@@ -0,0 +1,451 @@
+package com.jsonanalyzer.main;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.dataformat.smile.SmileParser;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the files by the hashes of their subtrees first, so only the entries of the subtrees that differ
+ * get flattened and compared. A subtree hash is the sum of the hashes of all the (flattened key, value) pairs
+ * below it, which makes it independent of the order of the keys, and the subtrees are taken by the dotted paths,
+ * so {@code {"a.b": {"c": 1}}} and {@code {"a": {"b.c": 1}}} have the same subtree hashes, as they have the same entries.
+ * <p>
+ * The file is parsed once: while hashing, the leaf values of each object are kept aside, encoded as Smile,
+ * and only the ones of the differing subtrees get decoded later. The hashes and the leaf values can be stored
+ * in a sidecar file next to the source file ({@value #SIDECAR_EXTENSION}), then the unchanged file isn't parsed
+ * at all, only the leaf values of its differing subtrees are read from the sidecar.
+ * <p>
+ * The paths of the objects are the keys of their hashes, so a String is made for each object while hashing,
+ * but not for the leaves: their keys are only built for the entries of the differing subtrees.
+ */
+public class MerkleComparator {
+
+    public static final String SIDECAR_EXTENSION = ".merkle";
+
+    private static final int SIDECAR_MAGIC = 0x4A41_4D48;
+    private static final int SIDECAR_VERSION = 2;
+    private static final int SIDECAR_HEADER_LENGTH = 28;
+    private static final String ROOT_PATH = "";
+
+    // every leaf is written as a root value of its own, so they can be appended to the leaves of their object
+    private static final ObjectMapper LEAVES_MAPPER = new ObjectMapper(new SmileFactory()
+            .disable(SmileGenerator.Feature.WRITE_HEADER)
+            .disable(SmileGenerator.Feature.CHECK_SHARED_NAMES)
+            .disable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+            .disable(SmileParser.Feature.REQUIRE_HEADER));
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * The hashes of the subtrees of a file, along with the leaf values of each of its objects: the (field name, value)
+     * pairs, in the {@code leavesData} of the memory, or in the sidecar file, from {@code leavesDataOffset} on.
+     */
+    public static final class SubtreeHashes {
+
+        private final Map<String, Long> hashesByPath;
+        private final Map<String, long[]> leavesRangesByPath;
+        private final byte[] leavesData;
+        private final Path sidecarFilePath;
+        private final long leavesDataOffset;
+
+        private SubtreeHashes(Map<String, Long> hashesByPath, Map<String, long[]> leavesRangesByPath, byte[] leavesData,
+                              Path sidecarFilePath, long leavesDataOffset) {
+            this.hashesByPath = hashesByPath;
+            this.leavesRangesByPath = leavesRangesByPath;
+            this.leavesData = leavesData;
+            this.sidecarFilePath = sidecarFilePath;
+            this.leavesDataOffset = leavesDataOffset;
+        }
+
+        public int size() {
+            return hashesByPath.size();
+        }
+
+        public boolean isSameSubtree(String path, SubtreeHashes otherHashes) {
+            Long hash = hashesByPath.get(path);
+            return hash != null && hash.equals(otherHashes.hashesByPath.get(path));
+        }
+
+    }
+
+    private static final class ParentObject {
+
+        private final String path;
+        private final long[] sum;
+        private final long pathPrefixHash;
+        private ByteArrayOutputStream leaves;
+
+        private ParentObject(String path, long[] sum, long pathPrefixHash) {
+            this.path = path;
+            this.sum = sum;
+            this.pathPrefixHash = pathPrefixHash;
+        }
+
+    }
+
+    private final ObjectReader reader;
+    private final JsonFlattener flattener;
+
+    public MerkleComparator(ObjectReader reader) {
+        this(reader, new JsonFlattener(reader));
+    }
+
+    /**
+     * The flattener decides if the arrays of the differing subtrees are flattened too,
+     * for the hashes they're leaves either way.
+     */
+    public MerkleComparator(ObjectReader reader, JsonFlattener flattener) {
+        this.reader = reader;
+        this.flattener = flattener;
+    }
+
+    public SubtreeHashes getHashes(Path filePath, boolean useSidecar) throws IOException {
+
+        if (!useSidecar) {
+            return computeHashes(filePath);
+        }
+
+        Path sidecarFilePath = getSidecarFilePath(filePath);
+        SubtreeHashes hashes = readSidecar(filePath, sidecarFilePath);
+        if (hashes == null) {
+            hashes = computeHashes(filePath);
+            writeSidecar(filePath, sidecarFilePath, hashes);
+        }
+
+        return hashes;
+
+    }
+
+    public SubtreeHashes computeHashes(Path filePath) throws IOException {
+
+        Map<String, long[]> sumsByPath = new HashMap<>();
+        sumsByPath.put(ROOT_PATH, new long[1]);
+        Map<String, ByteArrayOutputStream> leavesByPath = new LinkedHashMap<>();
+        ByteArrayOutputStream leafBytes = new ByteArrayOutputStream();
+
+        try (JsonParser parser = DataFormat.createNestedParser(reader, filePath.toAbsolutePath());
+             JsonGenerator leafGenerator = LEAVES_MAPPER.getFactory().createGenerator(leafBytes)) {
+
+            // same as the flattening: anything but an object in the root has no entries
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return new SubtreeHashes(new HashMap<>(), new HashMap<>(), new byte[0], null, 0);
+            }
+
+            Deque<ParentObject> parentObjects = new ArrayDeque<>();
+            parentObjects.push(new ParentObject(null, sumsByPath.get(ROOT_PATH), FNV_OFFSET_BASIS));
+            JsonToken token;
+
+            while ((token = parser.nextToken()) != null) {
+
+                if (token == JsonToken.FIELD_NAME) {
+
+                    ParentObject parentObject = parentObjects.peek();
+                    String fieldName = parser.getCurrentName();
+                    JsonToken valueToken = parser.nextToken();
+
+                    // the hash of the key continues from the hash of the parent path, so leaf keys are never concatenated
+                    long keyHash = hashChars(parentObject.pathPrefixHash, fieldName);
+
+                    if (valueToken == JsonToken.START_OBJECT) {
+                        String fieldPath = parentObject.path == null ? fieldName : parentObject.path + "." + fieldName;
+                        parentObjects.push(new ParentObject(fieldPath, getSum(sumsByPath, fieldPath), hashChar(keyHash, '.')));
+                    } else {
+                        String valueText = valueToken.isScalarValue() ? parser.getText() : null;
+                        JsonNode value = reader.readTree(parser);
+                        long[] parentSum = fieldName.indexOf('.') < 0
+                                ? parentObject.sum
+                                : getSum(sumsByPath, getParentPath(parentObject.path == null ? fieldName : parentObject.path + "." + fieldName));
+                        parentSum[0] += hashEntry(keyHash, valueToken, valueText != null ? valueText : value.toString());
+
+                        leafGenerator.writeString(fieldName);
+                        leafGenerator.writeTree(value);
+                        leafGenerator.flush();
+                        if (parentObject.leaves == null) {
+                            parentObject.leaves = new ByteArrayOutputStream();
+                            leavesByPath.put(parentObject.path == null ? ROOT_PATH : parentObject.path, parentObject.leaves);
+                        }
+                        leafBytes.writeTo(parentObject.leaves);
+                        leafBytes.reset();
+                    }
+
+                } else if (token == JsonToken.END_OBJECT) {
+
+                    parentObjects.pop();
+                    if (parentObjects.isEmpty()) {
+                        break;
+                    }
+
+                }
+
+            }
+
+        }
+
+        // the deepest subtrees go first, so each sum is complete by the time it's added to the parent one
+        List<String> paths = new ArrayList<>(sumsByPath.keySet());
+        paths.sort(Comparator.comparingInt(String::length).reversed());
+
+        Map<String, Long> hashesByPath = new HashMap<>(paths.size() * 2);
+        for (String path : paths) {
+            long sum = sumsByPath.get(path)[0];
+            hashesByPath.put(path, sum);
+            if (!ROOT_PATH.equals(path)) {
+                sumsByPath.get(getParentPath(path))[0] += sum;
+            }
+        }
+
+        // the leaves of all the objects go into a single array, one range after another
+        int leavesDataLength = 0;
+        for (ByteArrayOutputStream leaves : leavesByPath.values()) {
+            leavesDataLength += leaves.size();
+        }
+        byte[] leavesData = new byte[leavesDataLength];
+        Map<String, long[]> leavesRangesByPath = new LinkedHashMap<>(leavesByPath.size() * 2);
+        int leavesOffset = 0;
+        for (Map.Entry<String, ByteArrayOutputStream> leavesEntry : leavesByPath.entrySet()) {
+            byte[] leaves = leavesEntry.getValue().toByteArray();
+            System.arraycopy(leaves, 0, leavesData, leavesOffset, leaves.length);
+            leavesRangesByPath.put(leavesEntry.getKey(), new long[] {leavesOffset, leaves.length});
+            leavesOffset += leaves.length;
+        }
+
+        return new SubtreeHashes(hashesByPath, leavesRangesByPath, leavesData, null, 0);
+
+    }
+
+    /**
+     * Flattens only the leaf values of the subtrees which differ from the other file, the leaves
+     * of the same subtrees are skipped without being decoded.
+     */
+    public RadixTreeMap<JsonNode> flattenDifferingEntries(SubtreeHashes hashes, SubtreeHashes otherHashes) throws IOException {
+
+        RadixTreeMap<JsonNode> result = new RadixTreeMap<>();
+
+        if (hashes.isSameSubtree(ROOT_PATH, otherHashes)) {
+            return result;
+        }
+
+        try (FileChannel sidecarChannel = hashes.leavesData == null
+                ? FileChannel.open(hashes.sidecarFilePath, StandardOpenOption.READ)
+                : null) {
+
+            for (Map.Entry<String, long[]> leavesRange : hashes.leavesRangesByPath.entrySet()) {
+
+                // a subtree of the same parent subtree is the same too, so only the own hash of the object matters
+                String objectPath = leavesRange.getKey();
+                if (hashes.isSameSubtree(objectPath, otherHashes)) {
+                    continue;
+                }
+
+                long[] range = leavesRange.getValue();
+                try (JsonParser leavesParser = sidecarChannel == null
+                        ? LEAVES_MAPPER.getFactory().createParser(hashes.leavesData, (int) range[0], (int) range[1])
+                        : LEAVES_MAPPER.getFactory().createParser(readLeaves(sidecarChannel, hashes.leavesDataOffset + range[0], (int) range[1]))) {
+
+                    while (leavesParser.nextToken() != null) {
+                        String fieldName = leavesParser.getText();
+                        leavesParser.nextToken();
+                        JsonNode value = LEAVES_MAPPER.readTree(leavesParser);
+                        // the dotted field name adds subtrees of its own, which can be the same
+                        if (!isInSameSubtree(objectPath, fieldName, hashes, otherHashes)) {
+                            flattener.flatten(objectPath, fieldName, value, result::put);
+                        }
+                    }
+
+                }
+
+            }
+
+        }
+
+        return result;
+
+    }
+
+    public static Path getSidecarFilePath(Path filePath) {
+        return filePath.resolveSibling(filePath.getFileName() + SIDECAR_EXTENSION);
+    }
+
+    /**
+     * The subtrees of the parent object are already known to differ, but the dotted field name
+     * adds subtrees of its own, e.g. "a.b" for the "a.b.c" field.
+     */
+    private static boolean isInSameSubtree(String parentPath, String fieldName,
+                                           SubtreeHashes hashes, SubtreeHashes otherHashes) {
+
+        String parentPathPrefix = null;
+        for (int i = fieldName.indexOf('.'); i >= 0; i = fieldName.indexOf('.', i + 1)) {
+            if (parentPathPrefix == null) {
+                parentPathPrefix = ROOT_PATH.equals(parentPath) ? "" : parentPath + ".";
+            }
+            if (hashes.isSameSubtree(parentPathPrefix + fieldName.substring(0, i), otherHashes)) {
+                return true;
+            }
+        }
+
+        return false;
+
+    }
+
+    private static byte[] readLeaves(FileChannel channel, long position, int length) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Sidecar file ends before its leaf values");
+            }
+        }
+
+        return buffer.array();
+
+    }
+
+    private static long[] getSum(Map<String, long[]> sumsByPath, String path) {
+
+        long[] sum = sumsByPath.get(path);
+        if (sum != null) {
+            return sum;
+        }
+
+        sum = new long[1];
+        sumsByPath.put(path, sum);
+
+        // every subtree needs all of its parents, so the sums can be added up the tree later
+        for (String parentPath = getParentPath(path); !sumsByPath.containsKey(parentPath); parentPath = getParentPath(parentPath)) {
+            sumsByPath.put(parentPath, new long[1]);
+        }
+
+        return sum;
+
+    }
+
+    private static String getParentPath(String path) {
+        int lastDotIndex = path.lastIndexOf('.');
+        return lastDotIndex < 0 ? ROOT_PATH : path.substring(0, lastDotIndex);
+    }
+
+    private static long hashEntry(long keyHash, JsonToken valueToken, String valueText) {
+
+        long hash = (keyHash ^ valueToken.ordinal()) * FNV_PRIME;
+        hash = hashChars(hash, valueText);
+
+        // FNV alone mixes the last chars poorly, and the hashes get summed up
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+
+        return hash;
+
+    }
+
+    private static long hashChars(long hash, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            hash = hashChar(hash, text.charAt(i));
+        }
+        return hash;
+    }
+
+    private static long hashChar(long hash, char c) {
+        return (hash ^ c) * FNV_PRIME;
+    }
+
+    private static SubtreeHashes readSidecar(Path filePath, Path sidecarFilePath) throws IOException {
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(sidecarFilePath)))) {
+
+            if (input.readInt() != SIDECAR_MAGIC || input.readInt() != SIDECAR_VERSION
+                    || input.readLong() != Files.size(filePath)
+                    || input.readLong() != Files.getLastModifiedTime(filePath).toMillis()) {
+                return null;
+            }
+
+            // the leaf values stay in the file, only the ranges of them are read
+            long leavesDataOffset = SIDECAR_HEADER_LENGTH + input.readInt();
+
+            int hashesCount = input.readInt();
+            Map<String, Long> hashesByPath = new HashMap<>(hashesCount * 2);
+            for (int i = 0; i < hashesCount; i++) {
+                hashesByPath.put(input.readUTF(), input.readLong());
+            }
+
+            int leavesRangesCount = input.readInt();
+            Map<String, long[]> leavesRangesByPath = new LinkedHashMap<>(leavesRangesCount * 2);
+            for (int i = 0; i < leavesRangesCount; i++) {
+                leavesRangesByPath.put(input.readUTF(), new long[] {input.readLong(), input.readLong()});
+            }
+
+            return new SubtreeHashes(hashesByPath, leavesRangesByPath, null, sidecarFilePath, leavesDataOffset);
+
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+
+    }
+
+    private static void writeSidecar(Path filePath, Path sidecarFilePath, SubtreeHashes hashes) throws IOException {
+
+        ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+        DataOutputStream index = new DataOutputStream(indexBytes);
+
+        index.writeInt(hashes.hashesByPath.size());
+        for (Map.Entry<String, Long> hashEntry : hashes.hashesByPath.entrySet()) {
+            index.writeUTF(hashEntry.getKey());
+            index.writeLong(hashEntry.getValue());
+        }
+
+        index.writeInt(hashes.leavesRangesByPath.size());
+        for (Map.Entry<String, long[]> leavesRange : hashes.leavesRangesByPath.entrySet()) {
+            index.writeUTF(leavesRange.getKey());
+            index.writeLong(leavesRange.getValue()[0]);
+            index.writeLong(leavesRange.getValue()[1]);
+        }
+
+        JsonEntriesWriter.writeContent(sidecarFilePath, outputStream -> {
+
+            DataOutputStream output = new DataOutputStream(outputStream);
+
+            output.writeInt(SIDECAR_MAGIC);
+            output.writeInt(SIDECAR_VERSION);
+            output.writeLong(Files.size(filePath));
+            output.writeLong(Files.getLastModifiedTime(filePath).toMillis());
+            output.writeInt(indexBytes.size());
+            indexBytes.writeTo(output);
+            output.write(hashes.leavesData);
+
+            output.flush();
+
+        });
+
+    }
+
+}
@@ -0,0 +1,186 @@
+package com.jsonanalyzer.main;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Content-addressed cache of the flattened files: the entries of each parsed file are stored in the Smile format
+ * under the SHA-256 hash of the file content, so an unchanged file is never parsed & flattened again.
+ * The least recently used entries are evicted once the total size of the cache exceeds the limit.
+ */
+public class ParseCache {
+
+    private static final String CACHE_FILE_EXTENSION = ".smile";
+
+    private final Path cacheDirectory;
+    private final long maxSizeBytes;
+    private final ObjectMapper smileMapper;
+    private final JsonFlattener flattener;
+
+    public ParseCache(Path cacheDirectory, long maxSizeBytes, JsonFlattener flattener) throws IOException {
+
+        if (maxSizeBytes <= 0) {
+            throw new IllegalArgumentException(MessageFormat.format("Invalid cache size: {0}", maxSizeBytes));
+        }
+
+        this.cacheDirectory = Files.createDirectories(cacheDirectory);
+        this.maxSizeBytes = maxSizeBytes;
+        this.smileMapper = new ObjectMapper(new SmileFactory());
+        this.flattener = flattener;
+
+    }
+
+    public RadixTreeMap<JsonNode> flattenToSortedMap(Path filePath) throws IOException {
+
+        RadixTreeMap<JsonNode> result = new RadixTreeMap<>();
+        flatten(filePath, result::put);
+
+        return result;
+
+    }
+
+    public void flatten(Path filePath, JsonFlattener.EntryConsumer consumer) throws IOException {
+
+        Path cacheFilePath = cacheDirectory.resolve(getContentHash(filePath) + getFlatteningSuffix() + CACHE_FILE_EXTENSION);
+
+        if (readCachedEntries(cacheFilePath, consumer)) {
+            return;
+        }
+
+        // entries are written to the cache file while they're passed to the consumer, in the same single pass
+        JsonEntriesWriter.writeContent(cacheFilePath, outputStream -> {
+            try (JsonGenerator generator = smileMapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartObject();
+                flattener.flatten(filePath, (key, value) -> {
+                    generator.writeFieldName(key);
+                    generator.writeTree(value);
+                    consumer.accept(key, value);
+                });
+                generator.writeEndObject();
+            }
+        });
+
+        evictIfNeeded();
+
+    }
+
+    private boolean readCachedEntries(Path cacheFilePath, JsonFlattener.EntryConsumer consumer) throws IOException {
+
+        JsonParser parser;
+        try {
+            parser = smileMapper.createParser(Files.newInputStream(cacheFilePath));
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+
+        try {
+
+            // the modification time is what the eviction treats as the last access time
+            Files.setLastModifiedTime(cacheFilePath, FileTime.fromMillis(System.currentTimeMillis()));
+
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException(MessageFormat.format("Corrupted cache file: {0}", cacheFilePath));
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String key = parser.getCurrentName();
+                parser.nextToken();
+                consumer.accept(key, smileMapper.readTree(parser));
+            }
+
+        } finally {
+            parser.close();
+        }
+
+        return true;
+
+    }
+
+    private synchronized void evictIfNeeded() throws IOException {
+
+        List<Path> cacheFilesPaths = new ArrayList<>();
+        long totalSizeBytes = 0;
+
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(cacheDirectory, "*" + CACHE_FILE_EXTENSION)) {
+            for (Path cacheFilePath : directoryStream) {
+                cacheFilesPaths.add(cacheFilePath);
+                totalSizeBytes += Files.size(cacheFilePath);
+            }
+        }
+
+        if (totalSizeBytes <= maxSizeBytes) {
+            return;
+        }
+
+        cacheFilesPaths.sort(Comparator.comparing(ParseCache::getLastModifiedTime));
+
+        for (Path cacheFilePath : cacheFilesPaths) {
+            if (totalSizeBytes <= maxSizeBytes) {
+                break;
+            }
+            long cacheFileSize = Files.size(cacheFilePath);
+            Files.deleteIfExists(cacheFilePath);
+            totalSizeBytes -= cacheFileSize;
+        }
+
+    }
+
+    /**
+     * Same file flattened in the other way has other entries, the default flattening has no suffix.
+     */
+    private String getFlatteningSuffix() {
+        return (flattener.isFlatteningArrays() ? "-arrays" : "") + (flattener.isEscapingKeyDots() ? "-escaped" : "");
+    }
+
+    private static String getContentHash(Path filePath) throws IOException {
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream inputStream = Files.newInputStream(filePath)) {
+            int bytesRead;
+            while ((bytesRead = inputStream.read(buffer)) > 0) {
+                digest.update(buffer, 0, bytesRead);
+            }
+        }
+
+        StringBuilder hash = new StringBuilder();
+        for (byte hashByte : digest.digest()) {
+            hash.append(String.format("%02x", hashByte));
+        }
+
+        return hash.toString();
+
+    }
+
+    private static FileTime getLastModifiedTime(Path filePath) {
+        try {
+            return Files.getLastModifiedTime(filePath);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+package com.jsonanalyzer.main;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.MessageFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory LRU cache of the flattened files, used by the server to keep the recently parsed files between commands.
+ * Entries are checked against the size & modification time of the file. The cache is bounded by the estimated size
+ * of the cached maps, not by their count, since a single bundle can take a good part of the heap.
+ * <p>
+ * Every hit gives the cached map itself, so the callers must treat it as read-only.
+ */
+public class ParsedFilesMemoryCache {
+
+    public interface FileParser {
+
+        RadixTreeMap<JsonNode> parse(Path filePath) throws IOException;
+
+    }
+
+    // rough footprint of an entry besides its key & value: tree node, map entry and object headers
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+    private static final int VALUE_NODE_BYTES = 32;
+
+    private static final class CachedFile {
+
+        private final long size;
+        private final long lastModifiedTime;
+        private final RadixTreeMap<JsonNode> entries;
+        private final long estimatedBytes;
+
+        private CachedFile(long size, long lastModifiedTime, RadixTreeMap<JsonNode> entries, long estimatedBytes) {
+            this.size = size;
+            this.lastModifiedTime = lastModifiedTime;
+            this.entries = entries;
+            this.estimatedBytes = estimatedBytes;
+        }
+
+    }
+
+    private final long maxBytes;
+    private final Map<Path, CachedFile> cachedFiles = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes = 0;
+
+    public ParsedFilesMemoryCache(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException(MessageFormat.format("Invalid cache size: {0}", maxBytes));
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * A share of the max heap, for the cache living next to the commands using the rest of it.
+     */
+    public static long getHeapShareBytes(int heapDivisor) {
+        return Runtime.getRuntime().maxMemory() / heapDivisor;
+    }
+
+    public RadixTreeMap<JsonNode> flattenToSortedMap(Path filePath, FileParser parser) throws IOException {
+
+        Path absoluteFilePath = filePath.toAbsolutePath().normalize();
+        long size = Files.size(absoluteFilePath);
+        long lastModifiedTime = Files.getLastModifiedTime(absoluteFilePath).toMillis();
+
+        synchronized (cachedFiles) {
+            CachedFile cachedFile = cachedFiles.get(absoluteFilePath);
+            if (cachedFile != null && cachedFile.size == size && cachedFile.lastModifiedTime == lastModifiedTime) {
+                return cachedFile.entries;
+            }
+        }
+
+        RadixTreeMap<JsonNode> entries = parser.parse(filePath);
+        long estimatedBytes = estimateBytes(entries);
+
+        synchronized (cachedFiles) {
+
+            CachedFile replacedFile = cachedFiles.remove(absoluteFilePath);
+            if (replacedFile != null) {
+                cachedBytes -= replacedFile.estimatedBytes;
+            }
+
+            // a file bigger than the whole cache isn't kept, it would only evict everything else
+            if (estimatedBytes <= maxBytes) {
+                Iterator<CachedFile> eldestFiles = cachedFiles.values().iterator();
+                while (cachedBytes + estimatedBytes > maxBytes && eldestFiles.hasNext()) {
+                    cachedBytes -= eldestFiles.next().estimatedBytes;
+                    eldestFiles.remove();
+                }
+                cachedFiles.put(absoluteFilePath, new CachedFile(size, lastModifiedTime, entries, estimatedBytes));
+                cachedBytes += estimatedBytes;
+            }
+
+        }
+
+        return entries;
+
+    }
+
+    public long getCachedBytes() {
+        synchronized (cachedFiles) {
+            return cachedBytes;
+        }
+    }
+
+    public int getCachedFilesCount() {
+        synchronized (cachedFiles) {
+            return cachedFiles.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (cachedFiles) {
+            cachedFiles.clear();
+            cachedBytes = 0;
+        }
+    }
+
+    private static long estimateBytes(RadixTreeMap<JsonNode> entries) {
+
+        long estimatedBytes = 0;
+        for (Map.Entry<String, JsonNode> entry : entries.entrySet()) {
+            JsonNode value = entry.getValue();
+            estimatedBytes += ENTRY_OVERHEAD_BYTES + 2L * entry.getKey().length() + VALUE_NODE_BYTES;
+            if (value.isTextual()) {
+                estimatedBytes += 2L * value.textValue().length();
+            } else if (value.isContainerNode()) {
+                // arrays are leaves unless flattened, their serialized length is close enough
+                estimatedBytes += 2L * value.toString().length();
+            }
+        }
+
+        return estimatedBytes;
+
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.jsonanalyzer.main;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event of a finished {@link RunStats} phase, only ever loaded when the JVM has JFR,
+ * so the tool still runs on the older Java 8 builds.
+ */
+@Name("com.jsonanalyzer.Phase")
+@Label("JSON Analyzer Phase")
+@Category("JSON Analyzer")
+class PhaseEvent extends Event {
+
+    @Label("Option")
+    private String option;
+
+    @Label("Phase")
+    private String phase;
+
+    @Label("Bytes Read")
+    @DataAmount
+    private long bytesRead;
+
+    @Label("Bytes Written")
+    @DataAmount
+    private long bytesWritten;
+
+    @Label("Entries Read")
+    private long entriesRead;
+
+    @Label("Entries Written")
+    private long entriesWritten;
+
+    @Label("Allocated")
+    @DataAmount
+    private long allocatedBytes;
+
+    static Object beginEvent() {
+        PhaseEvent event = new PhaseEvent();
+        event.begin();
+        return event;
+    }
+
+    static void commitEvent(Object eventObject, String option, String phase, long bytesRead, long bytesWritten,
+                       long entriesRead, long entriesWritten, long allocatedBytes) {
+
+        PhaseEvent event = (PhaseEvent) eventObject;
+        event.end();
+
+        if (event.shouldCommit()) {
+            event.option = option;
+            event.phase = phase;
+            event.bytesRead = bytesRead;
+            event.bytesWritten = bytesWritten;
+            event.entriesRead = entriesRead;
+            event.entriesWritten = entriesWritten;
+            event.allocatedBytes = allocatedBytes;
+            event.commit();
+        }
+
+    }
+
+}
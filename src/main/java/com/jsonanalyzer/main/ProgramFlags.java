@@ -0,0 +1,47 @@
+package com.jsonanalyzer.main;
+
+public enum ProgramFlags {
+
+    THREADS("-threads", true),
+    VALUES("--values", false),
+    MEMORY("-memory", true),
+    TEMP_DIR("-temp-dir", true, true),
+    CONFLICT("-conflict", true),
+    CACHE("-cache", true, true),
+    CACHE_SIZE("-cache-size", true),
+    STATS("--stats", true, true),
+    SUMMARY("--summary", true, true),
+    KEEP_LAYOUT("--keep-layout", false),
+    MERKLE("--merkle", false),
+    MERKLE_SIDECAR("--merkle-sidecar", false),
+    ARRAYS("--arrays", false),
+    ESCAPE_DOTS("--escape-dots", false),
+    FORMAT("--format", true);
+
+    private final String name;
+    private final boolean withValue;
+    private final boolean withPathValue;
+
+    ProgramFlags(String name, boolean withValue) {
+        this(name, withValue, false);
+    }
+
+    ProgramFlags(String name, boolean withValue, boolean withPathValue) {
+        this.name = name;
+        this.withValue = withValue;
+        this.withPathValue = withPathValue;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isWithValue() {
+        return withValue;
+    }
+
+    public boolean isWithPathValue() {
+        return withPathValue;
+    }
+
+}
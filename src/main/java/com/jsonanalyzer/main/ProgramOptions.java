@@ -4,9 +4,13 @@ public enum ProgramOptions {
 
     ALIGN_AND_SORT("-sort"),
     COMPARE("-compare"),
+    COMPARE_ALL("-compare-all"),
     CLEANUP("-cleanup"),
     MERGE("-merge"),
-    FIND("-find");
+    FIND("-find"),
+    INDEX("-index"),
+    SERVER("-server"),
+    CLIENT("-client");
 
     private final String name;
 
@@ -0,0 +1,721 @@
+package com.jsonanalyzer.main;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Map with the keys stored in a compressed prefix tree: the common parts of the keys (like the parent path of
+ * the flattened entries) are stored once, and the full key strings only get created while iterating.
+ * Children are ordered by their first char, so iteration is always in natural {@code String} order
+ * and prefix queries don't need to scan the whole map.
+ */
+public class RadixTreeMap<V> extends AbstractMap<String, V> {
+
+    @SuppressWarnings("rawtypes")
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private static final class Node<V> {
+
+        private String label;
+        private Node<V>[] children;
+        private V value;
+        private boolean hasValue;
+
+        @SuppressWarnings("unchecked")
+        private Node(String label) {
+            this.label = label;
+            this.children = (Node<V>[]) NO_CHILDREN;
+        }
+
+    }
+
+    private final Node<V> root = new Node<>("");
+
+    private int size = 0;
+    private int modCount = 0;
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        Node<V> node = key instanceof String ? findNode((String) key) : null;
+        return node != null && node.hasValue;
+    }
+
+    /**
+     * Same as {@link #containsKey}, for the key in any char sequence, like a reused buffer, so no String is made for it.
+     */
+    public boolean containsKeyChars(CharSequence key) {
+        Node<V> node = findNode(key);
+        return node != null && node.hasValue;
+    }
+
+    @Override
+    public V get(Object key) {
+        Node<V> node = key instanceof String ? findNode((String) key) : null;
+        return node != null && node.hasValue ? node.value : null;
+    }
+
+    @Override
+    public V put(String key, V value) {
+
+        Objects.requireNonNull(key);
+
+        Node<V> node = root;
+        int position = 0;
+
+        while (position < key.length()) {
+
+            int childIndex = findChildIndex(node, key.charAt(position));
+
+            if (childIndex < 0) {
+                Node<V> leaf = new Node<>(key.substring(position));
+                leaf.value = value;
+                leaf.hasValue = true;
+                insertChild(node, -childIndex - 1, leaf);
+                size++;
+                modCount++;
+                return null;
+            }
+
+            Node<V> child = node.children[childIndex];
+            int commonLength = getCommonPrefixLength(child.label, key, position);
+
+            if (commonLength < child.label.length()) {
+                // the key diverges in the middle of the edge, so the edge gets split in two
+                Node<V> middle = new Node<>(child.label.substring(0, commonLength));
+                child.label = child.label.substring(commonLength);
+                insertChild(middle, 0, child);
+                node.children[childIndex] = middle;
+                child = middle;
+            }
+
+            node = child;
+            position += commonLength;
+
+        }
+
+        V oldValue = node.value;
+        node.value = value;
+
+        if (!node.hasValue) {
+            node.hasValue = true;
+            size++;
+            modCount++;
+            return null;
+        }
+
+        return oldValue;
+
+    }
+
+    @Override
+    public V remove(Object key) {
+
+        if (!(key instanceof String)) {
+            return null;
+        }
+
+        List<Node<V>> nodesPath = findNodesPath((String) key);
+        if (nodesPath == null) {
+            return null;
+        }
+
+        Node<V> node = nodesPath.get(nodesPath.size() - 1);
+        if (!node.hasValue) {
+            return null;
+        }
+
+        V oldValue = node.value;
+        node.value = null;
+        node.hasValue = false;
+        size--;
+        modCount++;
+
+        if (nodesPath.size() > 1) {
+            Node<V> parent = nodesPath.get(nodesPath.size() - 2);
+            if (node.children.length == 0) {
+                removeChild(parent, node);
+                compact(parent, nodesPath.size() > 2);
+            } else {
+                compact(node, true);
+            }
+        }
+
+        return oldValue;
+
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void clear() {
+        root.children = (Node<V>[]) NO_CHILDREN;
+        root.value = null;
+        root.hasValue = false;
+        size = 0;
+        modCount++;
+    }
+
+    /**
+     * Copies the structure of the tree without re-inserting the keys, the values themselves are shared.
+     */
+    public RadixTreeMap<V> copy() {
+
+        RadixTreeMap<V> copy = new RadixTreeMap<>();
+        copyChildren(root, copy.root);
+        copy.root.value = root.value;
+        copy.root.hasValue = root.hasValue;
+        copy.size = size;
+
+        return copy;
+
+    }
+
+    @Override
+    public Set<Entry<String, V>> entrySet() {
+        return new AbstractSet<Entry<String, V>>() {
+
+            @Override
+            public Iterator<Entry<String, V>> iterator() {
+                return new EntryIterator(root, "");
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+        };
+    }
+
+    /**
+     * Checks whether any of the keys of this map is a prefix of (or equal to) the passed text.
+     */
+    public boolean containsPrefixOf(CharSequence text) {
+
+        Node<V> node = root;
+        int position = 0;
+
+        while (true) {
+
+            if (node.hasValue) {
+                return true;
+            }
+            if (position == text.length()) {
+                return false;
+            }
+
+            int childIndex = findChildIndex(node, text.charAt(position));
+            if (childIndex < 0 || !startsWith(text, node.children[childIndex].label, position)) {
+                return false;
+            }
+
+            node = node.children[childIndex];
+            position += node.label.length();
+
+        }
+
+    }
+
+    public void forEachWithPrefix(String prefix, BiConsumer<String, V> consumer) {
+
+        StringBuilder subtreePath = new StringBuilder();
+        List<Node<V>> nodesPath = findPrefixNodesPath(prefix, subtreePath);
+        if (nodesPath == null) {
+            return;
+        }
+
+        Iterator<Entry<String, V>> iterator = new EntryIterator(nodesPath.get(nodesPath.size() - 1), subtreePath.toString());
+        while (iterator.hasNext()) {
+            Entry<String, V> entry = iterator.next();
+            consumer.accept(entry.getKey(), entry.getValue());
+        }
+
+    }
+
+    public List<String> keysWithPrefix(String prefix) {
+
+        List<String> keys = new ArrayList<>();
+        forEachWithPrefix(prefix, (key, value) -> keys.add(key));
+
+        return keys;
+
+    }
+
+    public boolean hasKeysWithPrefix(CharSequence prefix) {
+        Node<V> node = findPrefixNode(prefix);
+        // an iteration stopped early can leave the nodes of the removed entries, so a value has to be found
+        return node != null && hasValues(node);
+    }
+
+    /**
+     * Removes all the entries with keys starting with the passed prefix at once, returns the number of removed entries.
+     */
+    public int removeWithPrefix(String prefix) {
+
+        List<Node<V>> nodesPath = findPrefixNodesPath(prefix, new StringBuilder());
+        if (nodesPath == null) {
+            return 0;
+        }
+
+        if (nodesPath.size() == 1) {
+            int removedCount = size;
+            clear();
+            return removedCount;
+        }
+
+        Node<V> subtreeRoot = nodesPath.get(nodesPath.size() - 1);
+        Node<V> parent = nodesPath.get(nodesPath.size() - 2);
+
+        int removedCount = countValues(subtreeRoot);
+        removeChild(parent, subtreeRoot);
+        compact(parent, nodesPath.size() > 2);
+
+        size -= removedCount;
+        modCount++;
+
+        return removedCount;
+
+    }
+
+    private Node<V> findNode(CharSequence key) {
+
+        Node<V> node = root;
+        int position = 0;
+
+        while (position < key.length()) {
+
+            int childIndex = findChildIndex(node, key.charAt(position));
+            if (childIndex < 0 || !startsWith(key, node.children[childIndex].label, position)) {
+                return null;
+            }
+
+            node = node.children[childIndex];
+            position += node.label.length();
+
+        }
+
+        return node;
+
+    }
+
+    private List<Node<V>> findNodesPath(String key) {
+
+        List<Node<V>> nodesPath = new ArrayList<>();
+        Node<V> node = root;
+        int position = 0;
+        nodesPath.add(node);
+
+        while (position < key.length()) {
+
+            int childIndex = findChildIndex(node, key.charAt(position));
+            if (childIndex < 0 || !key.startsWith(node.children[childIndex].label, position)) {
+                return null;
+            }
+
+            node = node.children[childIndex];
+            position += node.label.length();
+            nodesPath.add(node);
+
+        }
+
+        return nodesPath;
+
+    }
+
+    /**
+     * The node of the subtree with all the keys starting with the prefix, found without any allocations,
+     * as it's looked up for every field by the streaming cleanup.
+     */
+    private Node<V> findPrefixNode(CharSequence prefix) {
+
+        Node<V> node = root;
+        int position = 0;
+
+        while (position < prefix.length()) {
+
+            int childIndex = findChildIndex(node, prefix.charAt(position));
+            if (childIndex < 0) {
+                return null;
+            }
+
+            node = node.children[childIndex];
+            int commonLength = getCommonPrefixLength(node.label, prefix, position);
+            if (commonLength < node.label.length() && position + commonLength < prefix.length()) {
+                return null;
+            }
+            position += commonLength;
+
+        }
+
+        return node;
+
+    }
+
+    private List<Node<V>> findPrefixNodesPath(CharSequence prefix, StringBuilder subtreePath) {
+
+        List<Node<V>> nodesPath = new ArrayList<>();
+        Node<V> node = root;
+        int position = 0;
+        nodesPath.add(node);
+
+        while (position < prefix.length()) {
+
+            int childIndex = findChildIndex(node, prefix.charAt(position));
+            if (childIndex < 0) {
+                return null;
+            }
+
+            node = node.children[childIndex];
+            int commonLength = getCommonPrefixLength(node.label, prefix, position);
+
+            // the prefix may end in the middle of the edge, then the whole subtree below it matches
+            if (commonLength < node.label.length() && position + commonLength < prefix.length()) {
+                return null;
+            }
+
+            subtreePath.append(node.label);
+            position += node.label.length();
+            nodesPath.add(node);
+
+        }
+
+        return nodesPath;
+
+    }
+
+    private static <V> int findChildIndex(Node<V> node, char firstChar) {
+
+        int low = 0;
+        int high = node.children.length - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            char middleChar = node.children[middle].label.charAt(0);
+            if (middleChar < firstChar) {
+                low = middle + 1;
+            } else if (middleChar > firstChar) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+
+        return -(low + 1);
+
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> void insertChild(Node<V> node, int index, Node<V> child) {
+
+        Node<V>[] children = (Node<V>[]) new Node[node.children.length + 1];
+        System.arraycopy(node.children, 0, children, 0, index);
+        children[index] = child;
+        System.arraycopy(node.children, index, children, index + 1, node.children.length - index);
+
+        node.children = children;
+
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> void removeChild(Node<V> node, Node<V> child) {
+
+        int index = findChildIndex(node, child.label.charAt(0));
+
+        Node<V>[] children = (Node<V>[]) new Node[node.children.length - 1];
+        System.arraycopy(node.children, 0, children, 0, index);
+        System.arraycopy(node.children, index + 1, children, index, node.children.length - index - 1);
+
+        node.children = children;
+
+    }
+
+    private static <V> void compact(Node<V> node, boolean canBeMerged) {
+
+        // a node without a value and with a single child is just a part of the edge, so they get joined
+        if (canBeMerged && !node.hasValue && node.children.length == 1) {
+            Node<V> child = node.children[0];
+            node.label = node.label + child.label;
+            node.children = child.children;
+            node.value = child.value;
+            node.hasValue = child.hasValue;
+        }
+
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> void copyChildren(Node<V> source, Node<V> target) {
+
+        if (source.children.length == 0) {
+            return;
+        }
+
+        target.children = (Node<V>[]) new Node[source.children.length];
+        for (int i = 0; i < source.children.length; i++) {
+            Node<V> sourceChild = source.children[i];
+            Node<V> targetChild = new Node<>(sourceChild.label);
+            targetChild.value = sourceChild.value;
+            targetChild.hasValue = sourceChild.hasValue;
+            copyChildren(sourceChild, targetChild);
+            target.children[i] = targetChild;
+        }
+
+    }
+
+    private static <V> boolean hasValues(Node<V> node) {
+
+        if (node.hasValue) {
+            return true;
+        }
+        for (Node<V> child : node.children) {
+            if (hasValues(child)) {
+                return true;
+            }
+        }
+
+        return false;
+
+    }
+
+    /**
+     * Drops the nodes left without values below the passed one, and joins the ones left with a single child.
+     */
+    private static <V> void pruneEmptyNodes(Node<V> node) {
+
+        int keptCount = 0;
+        for (Node<V> child : node.children) {
+            pruneEmptyNodes(child);
+            compact(child, true);
+            if (child.hasValue || child.children.length > 0) {
+                node.children[keptCount++] = child;
+            }
+        }
+
+        if (keptCount < node.children.length) {
+            node.children = Arrays.copyOf(node.children, keptCount);
+        }
+
+    }
+
+    private static <V> int countValues(Node<V> node) {
+
+        int count = node.hasValue ? 1 : 0;
+        for (Node<V> child : node.children) {
+            count += countValues(child);
+        }
+
+        return count;
+
+    }
+
+    private static boolean startsWith(CharSequence text, String label, int offset) {
+        return text.length() - offset >= label.length() && getCommonPrefixLength(label, text, offset) == label.length();
+    }
+
+    private static int getCommonPrefixLength(String label, CharSequence key, int keyOffset) {
+
+        int maxLength = Math.min(label.length(), key.length() - keyOffset);
+        int length = 0;
+
+        while (length < maxLength && label.charAt(length) == key.charAt(keyOffset + length)) {
+            length++;
+        }
+
+        return length;
+
+    }
+
+    private final class TreeEntry implements Entry<String, V> {
+
+        private final String key;
+        private final Node<V> node;
+
+        private TreeEntry(String key, Node<V> node) {
+            this.key = key;
+            this.node = node;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return node.value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            V oldValue = node.value;
+            node.value = value;
+            return oldValue;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+            return key.equals(entry.getKey()) && Objects.equals(node.value, entry.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ Objects.hashCode(node.value);
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + node.value;
+        }
+
+    }
+
+    private final class EntryIterator implements Iterator<Entry<String, V>> {
+
+        private final StringBuilder path;
+
+        @SuppressWarnings("unchecked")
+        private Node<V>[] nodesStack = (Node<V>[]) new Node[16];
+        private int[] childIndexesStack = new int[16];
+        private int[] pathLengthsStack = new int[16];
+        private int depth = 0;
+
+        private TreeEntry nextEntry;
+        private TreeEntry lastEntry;
+        private int expectedModCount = modCount;
+        private boolean hasRemovedEntries = false;
+
+        private EntryIterator(Node<V> startNode, String startPath) {
+            this.path = new StringBuilder(startPath);
+            push(startNode);
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextEntry != null;
+        }
+
+        @Override
+        public Entry<String, V> next() {
+
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (nextEntry == null) {
+                throw new NoSuchElementException();
+            }
+
+            lastEntry = nextEntry;
+            advance();
+
+            return lastEntry;
+
+        }
+
+        @Override
+        public void remove() {
+
+            if (lastEntry == null || !lastEntry.node.hasValue) {
+                throw new IllegalStateException();
+            }
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+
+            // the node itself stays in place, so the traversal state remains valid, it's pruned at the end
+            lastEntry.node.value = null;
+            lastEntry.node.hasValue = false;
+            size--;
+            modCount++;
+            expectedModCount = modCount;
+            hasRemovedEntries = true;
+            lastEntry = null;
+
+            if (nextEntry == null) {
+                pruneRemovedEntries();
+            }
+
+        }
+
+        private void advance() {
+
+            nextEntry = null;
+
+            while (depth > 0) {
+
+                int top = depth - 1;
+                Node<V> node = nodesStack[top];
+
+                if (childIndexesStack[top] < 0) {
+                    childIndexesStack[top] = 0;
+                    if (node.hasValue) {
+                        path.setLength(pathLengthsStack[top]);
+                        nextEntry = new TreeEntry(path.toString(), node);
+                        return;
+                    }
+                }
+
+                if (childIndexesStack[top] < node.children.length) {
+                    Node<V> child = node.children[childIndexesStack[top]++];
+                    path.setLength(pathLengthsStack[top]);
+                    path.append(child.label);
+                    push(child);
+                } else {
+                    depth--;
+                }
+
+            }
+
+            pruneRemovedEntries();
+
+        }
+
+        private void pruneRemovedEntries() {
+            if (hasRemovedEntries) {
+                pruneEmptyNodes(nodesStack[0]);
+                hasRemovedEntries = false;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void push(Node<V> node) {
+
+            if (depth == nodesStack.length) {
+                Node<V>[] newNodesStack = (Node<V>[]) new Node[depth * 2];
+                System.arraycopy(nodesStack, 0, newNodesStack, 0, depth);
+                nodesStack = newNodesStack;
+                int[] newChildIndexesStack = new int[depth * 2];
+                System.arraycopy(childIndexesStack, 0, newChildIndexesStack, 0, depth);
+                childIndexesStack = newChildIndexesStack;
+                int[] newPathLengthsStack = new int[depth * 2];
+                System.arraycopy(pathLengthsStack, 0, newPathLengthsStack, 0, depth);
+                pathLengthsStack = newPathLengthsStack;
+            }
+
+            nodesStack[depth] = node;
+            childIndexesStack[depth] = -1;
+            pathLengthsStack[depth] = path.length();
+            depth++;
+
+        }
+
+    }
+
+}
@@ -0,0 +1,207 @@
+package com.jsonanalyzer.main;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Metrics of a single command, split into the phases it goes through (reading, comparing, writing, etc.):
+ * wall time, time spent reading & writing the files, bytes & entries read and written, and bytes allocated
+ * by all the threads working on the phase. Every finished phase is also committed as a JFR event
+ * (when the JVM supports JFR), so it shows up in the flight recordings next to the GC & I/O events.
+ */
+public class RunStats {
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+    private static final boolean IS_JFR_AVAILABLE = isClassAvailable("jdk.jfr.Event");
+
+    private static final class Phase {
+
+        private final String name;
+        private final long startNanos = System.nanoTime();
+        private final long startAllocatedBytes = getCurrentThreadAllocatedBytes();
+        private final Object event = IS_JFR_AVAILABLE ? PhaseEvent.beginEvent() : null;
+
+        private long wallNanos;
+        private final AtomicLong readNanos = new AtomicLong();
+        private final AtomicLong writeNanos = new AtomicLong();
+        private final AtomicLong bytesRead = new AtomicLong();
+        private final AtomicLong bytesWritten = new AtomicLong();
+        private final AtomicLong entriesRead = new AtomicLong();
+        private final AtomicLong entriesWritten = new AtomicLong();
+        private final AtomicLong allocatedBytes = new AtomicLong();
+
+        private Phase(String name) {
+            this.name = name;
+        }
+
+    }
+
+    private final String option;
+    private final long startNanos = System.nanoTime();
+    private final List<Phase> phases = new ArrayList<>();
+
+    private volatile Phase currentPhase;
+
+    public RunStats(String option) {
+        this.option = option;
+    }
+
+    /**
+     * Finishes the current phase (if any) and starts the next one on the calling thread.
+     */
+    public synchronized void startPhase(String name) {
+        finishPhase();
+        currentPhase = new Phase(name);
+        phases.add(currentPhase);
+    }
+
+    public synchronized void finishPhase() {
+
+        Phase phase = currentPhase;
+        if (phase == null) {
+            return;
+        }
+        currentPhase = null;
+
+        phase.wallNanos = System.nanoTime() - phase.startNanos;
+        addAllocatedBytes(phase, phase.startAllocatedBytes);
+
+        if (phase.event != null) {
+            PhaseEvent.commitEvent(phase.event, option, phase.name, phase.bytesRead.get(), phase.bytesWritten.get(),
+                    phase.entriesRead.get(), phase.entriesWritten.get(), phase.allocatedBytes.get());
+        }
+
+    }
+
+    public void recordRead(long startNanos, long bytes, long entries) {
+        Phase phase = currentPhase;
+        if (phase != null) {
+            phase.readNanos.addAndGet(System.nanoTime() - startNanos);
+            phase.bytesRead.addAndGet(bytes);
+            phase.entriesRead.addAndGet(entries);
+        }
+    }
+
+    public void recordWrite(long startNanos, long bytes, long entries) {
+        Phase phase = currentPhase;
+        if (phase != null) {
+            phase.writeNanos.addAndGet(System.nanoTime() - startNanos);
+            phase.bytesWritten.addAndGet(bytes);
+            phase.entriesWritten.addAndGet(entries);
+        }
+    }
+
+    /**
+     * For the files which are read & written at once, as a stream: the time can't be split between the two,
+     * so all of it is counted once, as the writing time.
+     */
+    public void recordStreamed(long startNanos, long bytesRead, long bytesWritten) {
+        Phase phase = currentPhase;
+        if (phase != null) {
+            phase.writeNanos.addAndGet(System.nanoTime() - startNanos);
+            phase.bytesRead.addAndGet(bytesRead);
+            phase.bytesWritten.addAndGet(bytesWritten);
+        }
+    }
+
+    /**
+     * Wraps the task, so the memory allocated by the worker threads running it is added to the current phase
+     * (the allocations of the thread that started the phase are already counted).
+     */
+    public <T> FileTaskRunner.FileTask<T> track(FileTaskRunner.FileTask<T> task) {
+
+        Thread phaseThread = Thread.currentThread();
+
+        return filePath -> {
+
+            if (Thread.currentThread() == phaseThread) {
+                return task.run(filePath);
+            }
+
+            long startAllocatedBytes = getCurrentThreadAllocatedBytes();
+            try {
+                return task.run(filePath);
+            } finally {
+                Phase phase = currentPhase;
+                if (phase != null) {
+                    addAllocatedBytes(phase, startAllocatedBytes);
+                }
+            }
+
+        };
+
+    }
+
+    public synchronized ObjectNode toJson() {
+
+        ObjectNode statsNode = JsonNodeFactory.instance.objectNode();
+        statsNode.put("option", option);
+        statsNode.put("wallTimeMillis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+
+        ArrayNode phasesNode = statsNode.putArray("phases");
+        for (Phase phase : phases) {
+            ObjectNode phaseNode = phasesNode.addObject();
+            phaseNode.put("name", phase.name);
+            phaseNode.put("wallTimeMillis", TimeUnit.NANOSECONDS.toMillis(phase.wallNanos));
+            phaseNode.put("readTimeMillis", TimeUnit.NANOSECONDS.toMillis(phase.readNanos.get()));
+            phaseNode.put("writeTimeMillis", TimeUnit.NANOSECONDS.toMillis(phase.writeNanos.get()));
+            phaseNode.put("bytesRead", phase.bytesRead.get());
+            phaseNode.put("bytesWritten", phase.bytesWritten.get());
+            phaseNode.put("entriesRead", phase.entriesRead.get());
+            phaseNode.put("entriesWritten", phase.entriesWritten.get());
+            phaseNode.put("allocatedBytes", phase.allocatedBytes.get());
+        }
+
+        return statsNode;
+
+    }
+
+    public void write(ObjectMapper mapper, Path targetFilePath) throws IOException {
+        ObjectNode statsNode = toJson();
+        JsonEntriesWriter.writeContent(targetFilePath,
+                outputStream -> mapper.writerWithDefaultPrettyPrinter().writeValue(outputStream, statsNode));
+    }
+
+    private static void addAllocatedBytes(Phase phase, long startAllocatedBytes) {
+        long allocatedBytes = getCurrentThreadAllocatedBytes();
+        if (startAllocatedBytes >= 0 && allocatedBytes >= 0) {
+            phase.allocatedBytes.addAndGet(allocatedBytes - startAllocatedBytes);
+        }
+    }
+
+    private static long getCurrentThreadAllocatedBytes() {
+
+        if (!(THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) THREAD_MX_BEAN;
+        if (!threadMXBean.isThreadAllocatedMemorySupported() || !threadMXBean.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+
+        return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+
+    }
+
+    private static boolean isClassAvailable(String className) {
+        try {
+            Class.forName(className, false, RunStats.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.jsonanalyzer.main;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Outcome of each input file of a single command: the result files written for it, or the error it failed with,
+ * so a run over thousands of files can be checked in one place instead of next to each of the files.
+ */
+public class RunSummary {
+
+    private static final class FileOutcome {
+
+        private final List<String> resultFilesPaths = new ArrayList<>(1);
+        private String error;
+
+    }
+
+    private final String option;
+    private final Map<String, FileOutcome> outcomesByFile = new TreeMap<>();
+
+    public RunSummary(String option) {
+        this.option = option;
+    }
+
+    public synchronized void recordResult(String filePath, Path resultFilePath) {
+        outcomesByFile.computeIfAbsent(filePath, k -> new FileOutcome()).resultFilesPaths.add(resultFilePath.toString());
+    }
+
+    public synchronized void recordFailure(String filePath, Throwable cause) {
+        outcomesByFile.computeIfAbsent(filePath, k -> new FileOutcome()).error = String.valueOf(cause);
+    }
+
+    /**
+     * Wraps the task, so the file gets into the summary even if it has no results, and its failure is recorded.
+     */
+    public <T> FileTaskRunner.FileTask<T> track(FileTaskRunner.FileTask<T> task) {
+
+        return filePath -> {
+
+            synchronized (this) {
+                outcomesByFile.computeIfAbsent(filePath, k -> new FileOutcome());
+            }
+
+            try {
+                return task.run(filePath);
+            } catch (IOException | RuntimeException e) {
+                recordFailure(filePath, e);
+                throw e;
+            }
+
+        };
+
+    }
+
+    public synchronized ObjectNode toJson() {
+
+        ObjectNode summaryNode = JsonNodeFactory.instance.objectNode();
+        summaryNode.put("option", option);
+        summaryNode.put("filesCount", outcomesByFile.size());
+        summaryNode.put("failedFilesCount", outcomesByFile.values().stream().filter(outcome -> outcome.error != null).count());
+
+        ObjectNode filesNode = summaryNode.putObject("files");
+        for (Map.Entry<String, FileOutcome> fileOutcome : outcomesByFile.entrySet()) {
+            ObjectNode fileNode = filesNode.putObject(fileOutcome.getKey());
+            if (fileOutcome.getValue().error != null) {
+                fileNode.put("error", fileOutcome.getValue().error);
+            } else {
+                fileOutcome.getValue().resultFilesPaths.forEach(fileNode.putArray("results")::add);
+            }
+        }
+
+        return summaryNode;
+
+    }
+
+    public void write(ObjectMapper mapper, Path targetFilePath) throws IOException {
+        ObjectNode summaryNode = toJson();
+        JsonEntriesWriter.writeContent(targetFilePath,
+                outputStream -> mapper.writerWithDefaultPrettyPrinter().writeValue(outputStream, summaryNode));
+    }
+
+}
@@ -0,0 +1,253 @@
+package com.jsonanalyzer.main;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Removes the excluded keys by copying the tokens from the parser straight to the generator, so the nesting
+ * and the order of the keys stay as they were in the source file, and only the current path is kept in memory.
+ * Subtrees without any excluded keys below them are copied as a whole, and objects left empty after the removal
+ * are dropped, same as they'd disappear from the flattened entries.
+ * <p>
+ * When the arrays are flattened, an array with excluded elements below it is read as a tree and filtered in memory,
+ * the arrays of the bundles are small. The removed elements are dropped, so the following ones get shifted.
+ */
+public class StreamingCleanupFilter {
+
+    /**
+     * The current path followed by the separator of its children, for the prefix lookups without copying the path.
+     */
+    private static final class ChildPathPrefix implements CharSequence {
+
+        private final CharSequence path;
+        private char separator;
+
+        private ChildPathPrefix(CharSequence path) {
+            this.path = path;
+        }
+
+        @Override
+        public int length() {
+            return path.length() + 1;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return index < path.length() ? path.charAt(index) : separator;
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return path.toString() + separator;
+        }
+
+    }
+
+    private static final class Frame {
+
+        private final String fieldName;
+        private boolean isOpened;
+        private boolean hasFields;
+
+        private Frame(String fieldName, boolean isOpened) {
+            this.fieldName = fieldName;
+            this.isOpened = isOpened;
+        }
+
+    }
+
+    private final ObjectReader reader;
+    private final ObjectMapper mapper;
+    private final JsonFlattener flattener;
+    private final DataFormat outputFormat;
+    private final RadixTreeMap<Boolean> excludedKeys = new RadixTreeMap<>();
+    private final RadixTreeMap<Boolean> excludedPrefixes = new RadixTreeMap<>();
+
+    public StreamingCleanupFilter(ObjectReader reader, ObjectMapper mapper,
+                                  Collection<String> keysToExclude, Collection<String> prefixesToExclude) {
+        this(reader, mapper, new JsonFlattener(reader), DataFormat.PRETTY, keysToExclude, prefixesToExclude);
+    }
+
+    /**
+     * The excluded keys have to be flattened by the same flattener, which decides how the paths are built.
+     * The output format can't be NDJSON, the layout of the file is kept.
+     */
+    public StreamingCleanupFilter(ObjectReader reader, ObjectMapper mapper, JsonFlattener flattener, DataFormat outputFormat,
+                                  Collection<String> keysToExclude, Collection<String> prefixesToExclude) {
+
+        if (outputFormat == DataFormat.NDJSON) {
+            throw new IllegalArgumentException("The layout of the file can't be kept in NDJSON");
+        }
+
+        this.reader = reader;
+        this.mapper = mapper;
+        this.flattener = flattener;
+        this.outputFormat = outputFormat;
+
+        for (String keyToExclude : keysToExclude) {
+            excludedKeys.put(keyToExclude, Boolean.TRUE);
+        }
+        for (String prefixToExclude : prefixesToExclude) {
+            excludedPrefixes.put(prefixToExclude, Boolean.TRUE);
+        }
+
+    }
+
+    public void filter(Path sourceFilePath, Path targetFilePath) throws IOException {
+        try (JsonParser parser = DataFormat.createNestedParser(reader, sourceFilePath.toAbsolutePath())) {
+            JsonEntriesWriter.writeContent(targetFilePath, outputStream -> {
+                try (JsonGenerator generator = outputFormat.createGenerator(mapper, outputStream)) {
+                    filter(parser, generator);
+                }
+            });
+        }
+    }
+
+    public void filter(JsonParser parser, JsonGenerator generator) throws IOException {
+
+        // anything but an object in the root has no keys to exclude
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            if (parser.currentToken() != null) {
+                generator.copyCurrentStructure(parser);
+            }
+            return;
+        }
+
+        generator.writeStartObject();
+
+        Deque<Frame> frames = new ArrayDeque<>();
+        frames.push(new Frame(null, true));
+        KeyPath path = new KeyPath(flattener.isEscapingKeyDots());
+        ChildPathPrefix childPathPrefix = new ChildPathPrefix(path);
+        JsonToken token;
+
+        while ((token = parser.nextToken()) != null) {
+
+            if (token == JsonToken.FIELD_NAME) {
+
+                Frame frame = frames.peek();
+                String fieldName = parser.getCurrentName();
+                path.pushField(fieldName);
+                JsonToken valueToken = parser.nextToken();
+                frame.hasFields = true;
+
+                if (isExcluded(path)) {
+                    parser.skipChildren();
+                } else if (valueToken == JsonToken.START_OBJECT && hasExcludedKeysBelow(childPathPrefix, '.')) {
+                    // the object is only written once something in it survives
+                    frames.push(new Frame(fieldName, false));
+                    continue;
+                } else if (valueToken == JsonToken.START_ARRAY && flattener.isFlatteningArrays()
+                        && hasExcludedKeysBelow(childPathPrefix, '[')) {
+                    JsonNode array = reader.readTree(parser);
+                    removeExcludedElements(path, array);
+                    openPendingObjects(frames, generator);
+                    generator.writeFieldName(fieldName);
+                    mapper.writeTree(generator, array);
+                } else {
+                    openPendingObjects(frames, generator);
+                    generator.writeFieldName(fieldName);
+                    generator.copyCurrentStructure(parser);
+                }
+                path.pop();
+
+            } else if (token == JsonToken.END_OBJECT) {
+
+                Frame frame = frames.pop();
+
+                if (frame.isOpened) {
+                    generator.writeEndObject();
+                } else if (!frame.hasFields) {
+                    openPendingObjects(frames, generator);
+                    generator.writeFieldName(frame.fieldName);
+                    generator.writeStartObject();
+                    generator.writeEndObject();
+                }
+
+                if (frames.isEmpty()) {
+                    break;
+                }
+                path.pop();
+
+            }
+
+        }
+
+    }
+
+    private boolean isExcluded(CharSequence path) {
+        return excludedKeys.containsKeyChars(path) || excludedPrefixes.containsPrefixOf(path);
+    }
+
+    private boolean hasExcludedKeysBelow(ChildPathPrefix childPathPrefix, char childPathSeparator) {
+        childPathPrefix.separator = childPathSeparator;
+        return excludedKeys.hasKeysWithPrefix(childPathPrefix) || excludedPrefixes.hasKeysWithPrefix(childPathPrefix);
+    }
+
+    private void removeExcludedElements(KeyPath path, JsonNode node) {
+
+        if (node.isObject()) {
+            Iterator<Map.Entry<String, JsonNode>> fieldsIterator = node.fields();
+            while (fieldsIterator.hasNext()) {
+                Map.Entry<String, JsonNode> field = fieldsIterator.next();
+                path.pushField(field.getKey());
+                if (isExcluded(path)) {
+                    fieldsIterator.remove();
+                } else {
+                    removeExcludedElements(path, field.getValue());
+                }
+                path.pop();
+            }
+        } else if (node.isArray()) {
+            Iterator<JsonNode> elementsIterator = node.elements();
+            // the paths keep the indexes of the source file
+            for (int i = 0; elementsIterator.hasNext(); i++) {
+                JsonNode element = elementsIterator.next();
+                path.pushIndex(i);
+                if (isExcluded(path)) {
+                    elementsIterator.remove();
+                } else {
+                    removeExcludedElements(path, element);
+                }
+                path.pop();
+            }
+        }
+
+    }
+
+    private static void openPendingObjects(Deque<Frame> frames, JsonGenerator generator) throws IOException {
+
+        if (frames.peek().isOpened) {
+            return;
+        }
+
+        Iterator<Frame> iterator = frames.descendingIterator();
+        while (iterator.hasNext()) {
+            Frame frame = iterator.next();
+            if (!frame.isOpened) {
+                generator.writeFieldName(frame.fieldName);
+                generator.writeStartObject();
+                frame.isOpened = true;
+            }
+        }
+
+    }
+
+}
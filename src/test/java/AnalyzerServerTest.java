@@ -0,0 +1,92 @@
+import com.jsonanalyzer.main.AnalyzerClient;
+import com.jsonanalyzer.main.AnalyzerServer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class AnalyzerServerTest {
+
+    @Test
+    @DisplayName("🔌 Running commands through the server and the thin client")
+    public void testCommandsThroughServer(@TempDir Path tempDirectory) throws Exception {
+
+        Path sourceFilePath = Files.copy(Paths.get("src/test/resources/first.json"), tempDirectory.resolve("first.json"));
+        Path serverFilePath = tempDirectory.resolve(AnalyzerServer.SERVER_FILE_NAME);
+
+        AnalyzerServer server = new AnalyzerServer(0);
+        server.publish(serverFilePath);
+        Thread serverThread = new Thread(() -> {
+            try {
+                server.serve();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        serverThread.start();
+
+        int firstExitCode = AnalyzerClient.run(serverFilePath, "-sort", sourceFilePath.toString());
+        byte[] firstSortedContent = Files.readAllBytes(tempDirectory.resolve("first (sorted).json"));
+        int secondExitCode = AnalyzerClient.run(serverFilePath, "-sort", sourceFilePath.toString());
+        byte[] secondSortedContent = Files.readAllBytes(tempDirectory.resolve("first (sorted).json"));
+        int failedExitCode = AnalyzerClient.run(serverFilePath, "-sort", tempDirectory.resolve("missing.json").toString());
+        int shutdownExitCode = AnalyzerClient.run(serverFilePath, AnalyzerServer.SHUTDOWN_COMMAND);
+
+        serverThread.join(10_000);
+
+        assertAll("server",
+                () -> assertEquals(0, firstExitCode, () -> "command failed"),
+                () -> assertEquals(0, secondExitCode, () -> "command with parsed file in memory failed"),
+                () -> assertArrayEquals(firstSortedContent, secondSortedContent, () -> "output of cached file differs"),
+                () -> assertEquals(1, failedExitCode, () -> "failure is not reported"),
+                () -> assertEquals(0, shutdownExitCode, () -> "shutdown failed"),
+                () -> assertFalse(serverThread.isAlive(), () -> "server is still running"),
+                () -> assertFalse(Files.exists(serverFilePath), () -> "server file is not removed")
+        );
+
+    }
+
+    @Test
+    @DisplayName("📜 Splitting the batch command lines")
+    public void testBatchCommandLineSplitting() {
+        assertEquals(Arrays.asList("-find", "a.json", "set one=b c.json", ""),
+                Arrays.asList(AnalyzerClient.splitCommandLine("-find  a.json \"set one=b c.json\" \"\"")),
+                () -> "arguments are split wrong");
+    }
+
+    @Test
+    @DisplayName("🧭 Resolving the paths of the command against the working directory of the client")
+    public void testPathsResolving() {
+
+        String workingDirectory = new File("").getAbsolutePath();
+        String[] command = AnalyzerClient.toAbsolutePaths(new String[]{"-threads", "4", "-temp-dir", "missing/spill",
+                "-find", "texts/*.yml", "set=other", "--stats", "stats.json", "--Format", "sorted"});
+
+        assertAll("resolved command",
+                () -> assertEquals("4", command[1], () -> "value of -threads is resolved"),
+                () -> assertEquals(new File(workingDirectory, "missing/spill").getPath(), command[3],
+                        () -> "missing -temp-dir is not resolved"),
+                () -> assertEquals("-find", command[4], () -> "option is resolved"),
+                () -> assertEquals(new File(workingDirectory, "texts/*.yml").getPath(), command[5],
+                        () -> "glob is not resolved"),
+                () -> assertEquals("set=" + new File(workingDirectory, "other").getPath(), command[6],
+                        () -> "named set is not resolved"),
+                () -> assertEquals(new File(workingDirectory, "stats.json").getPath(), command[8],
+                        () -> "--stats is not resolved"),
+                () -> assertEquals("sorted", command[10], () -> "value of -format is resolved")
+        );
+
+    }
+
+}
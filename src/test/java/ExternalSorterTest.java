@@ -0,0 +1,139 @@
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.jsonanalyzer.main.ExternalSorter;
+import com.jsonanalyzer.main.JsonFlattener;
+import com.jsonanalyzer.main.Main;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ExternalSorterTest {
+
+    @Test
+    @DisplayName("💾 Sorting entries with spilled runs gives the same result as sorting them in memory")
+    public void testSortingWithSpilledRuns() throws IOException {
+
+        ObjectMapper mapper = new ObjectMapper();
+        JsonFlattener flattener = new JsonFlattener(mapper.reader());
+
+        Map<String, JsonNode> expectedMap = new TreeMap<>();
+        Map<String, JsonNode> sortedMap = new LinkedHashMap<>();
+
+        try (ExternalSorter sorter = new ExternalSorter(mapper, 256)) {
+
+            for (String path : new String[] {"src/test/resources/first.json", "src/test/resources/second.json"}) {
+                flattener.flatten(Paths.get(path), sorter::add);
+                expectedMap.putAll(Main.getSortedPlainMapOfNodes(Main.readJsonTreeByFilePath(path)));
+            }
+            sorter.add("component.basket.buttons.checkout", IntNode.valueOf(42));
+            expectedMap.put("component.basket.buttons.checkout", IntNode.valueOf(42));
+
+            int runsCount = sorter.getRunsCount();
+            sorter.forEachSorted(sortedMap::put);
+
+            assertAll("sorted entries",
+                    () -> assertTrue(runsCount > 1, () -> "weren't spilled to the disk"),
+                    () -> assertEquals(expectedMap, sortedMap, () -> "are different from the in-memory ones"),
+                    () -> assertEquals(expectedMap.keySet().toString(), sortedMap.keySet().toString(),
+                            () -> "are not sorted")
+            );
+
+        }
+
+    }
+
+    @Test
+    @DisplayName("🪜 Merging many runs in several passes into the passed spill directory")
+    public void testMultiPassMerge(@TempDir Path spillDirectory) throws IOException {
+
+        ObjectMapper mapper = new ObjectMapper();
+        Map<String, JsonNode> expectedMap = new TreeMap<>();
+        Map<String, JsonNode> sortedMap = new LinkedHashMap<>();
+        int runsCountBeforeMerge;
+        int runsCountAfterMerge;
+        long spilledFilesCount;
+
+        try (ExternalSorter sorter = new ExternalSorter(mapper, 1, spillDirectory, 3)) {
+
+            // every entry is a run of its own, the later ones overwrite some of the earlier keys
+            for (int i = 0; i < 40; i++) {
+                String key = "key-" + (i * 7 % 25);
+                sorter.add(key, IntNode.valueOf(i));
+                expectedMap.put(key, IntNode.valueOf(i));
+            }
+
+            runsCountBeforeMerge = sorter.getRunsCount();
+            sorter.forEachSorted(sortedMap::put);
+            runsCountAfterMerge = sorter.getRunsCount();
+            try (Stream<Path> spilledFiles = Files.walk(spillDirectory)) {
+                spilledFilesCount = spilledFiles.filter(Files::isRegularFile).count();
+            }
+
+        }
+
+        long spilledFilesCountAfterClose;
+        try (Stream<Path> spilledFiles = Files.walk(spillDirectory)) {
+            spilledFilesCountAfterClose = spilledFiles.filter(path -> !path.equals(spillDirectory)).count();
+        }
+
+        assertAll("multi-pass merge",
+                () -> assertEquals(40, runsCountBeforeMerge, () -> "has wrong number of spilled runs"),
+                () -> assertTrue(runsCountAfterMerge <= 3, () -> "merges too many runs at once"),
+                () -> assertEquals(runsCountAfterMerge, spilledFilesCount, () -> "keeps the merged runs"),
+                () -> assertEquals(expectedMap, sortedMap, () -> "gives wrong entries"),
+                () -> assertEquals(0, spilledFilesCountAfterClose, () -> "leaves the spilled files behind")
+        );
+
+    }
+
+    @Test
+    @DisplayName("🧠 Sorting entries within the budget keeps them in memory as they are")
+    public void testSortingWithinBudget(@TempDir Path spillDirectory) throws IOException {
+
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode value = mapper.getNodeFactory().textNode("value");
+        Map<String, JsonNode> sortedMap = new LinkedHashMap<>();
+        int runsCount;
+        long spilledFilesCount;
+
+        try (ExternalSorter sorter = new ExternalSorter(mapper, 1024 * 1024, spillDirectory, 3)) {
+
+            sorter.add("b", IntNode.valueOf(1));
+            sorter.add("a", value);
+            sorter.add("b", IntNode.valueOf(2));
+            sorter.add("c", IntNode.valueOf(3));
+
+            runsCount = sorter.getRunsCount();
+            sorter.forEachSorted(sortedMap::put);
+            try (Stream<Path> spilledFiles = Files.walk(spillDirectory)) {
+                spilledFilesCount = spilledFiles.filter(path -> !path.equals(spillDirectory)).count();
+            }
+
+        }
+
+        assertAll("in-memory sort",
+                () -> assertEquals(0, runsCount, () -> "spills entries within the budget"),
+                () -> assertEquals(0, spilledFilesCount, () -> "writes to the spill directory"),
+                () -> assertEquals("[a, b, c]", sortedMap.keySet().toString(), () -> "are not sorted"),
+                () -> assertEquals(IntNode.valueOf(2), sortedMap.get("b"), () -> "doesn't keep the last value"),
+                () -> assertSame(value, sortedMap.get("a"), () -> "copies the values")
+        );
+
+    }
+
+}
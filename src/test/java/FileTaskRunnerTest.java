@@ -0,0 +1,86 @@
+import com.jsonanalyzer.main.FileTaskRunner;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FileTaskRunnerTest {
+
+    private static final List<String> FILE_PATHS = Arrays.asList("c.json", "a.json", "d.json", "b.json");
+
+    @Test
+    @DisplayName("🧵 Running tasks on a worker pool keeps the order of the files")
+    public void testResultsOrder() {
+
+        Map<String, String> results = new FileTaskRunner(3).runForEachFile(FILE_PATHS, String::toUpperCase);
+
+        assertAll("results",
+                () -> assertEquals(FILE_PATHS, new ArrayList<>(results.keySet()), () -> "are not in the input order"),
+                () -> assertEquals("D.JSON", results.get("d.json"), () -> "have wrong value")
+        );
+
+    }
+
+    @Test
+    @DisplayName("💥 Failure of one file doesn't stop the others and gets reported")
+    public void testFailuresReporting() {
+
+        List<String> processedFiles = new ArrayList<>();
+
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> new FileTaskRunner(1)
+                .runForEachFile(FILE_PATHS, filePath -> {
+                    if (filePath.startsWith("a")) {
+                        throw new FileNotFoundException(filePath);
+                    }
+                    processedFiles.add(filePath);
+                    return filePath;
+                }));
+
+        assertAll("failed run",
+                () -> assertEquals(3, processedFiles.size(), () -> "has skipped files"),
+                () -> assertEquals(1, exception.getSuppressed().length, () -> "has wrong number of failures"),
+                () -> assertTrue(exception.getSuppressed()[0] instanceof FileNotFoundException,
+                        () -> "has lost the original exception")
+        );
+
+    }
+
+    @Test
+    @DisplayName("🐜 Each of many tiny files is processed exactly once")
+    public void testManySmallFiles() {
+
+        List<String> filePaths = IntStream.range(0, 20_000)
+                .mapToObj(i -> "fragment-" + i + ".json")
+                .collect(Collectors.toList());
+        Map<String, AtomicInteger> runsByFile = new ConcurrentHashMap<>();
+
+        FileTaskRunner runner = FileTaskRunner.forManyFiles();
+        Map<String, Integer> results = runner.runForEachFile(filePaths, filePath -> {
+            runsByFile.computeIfAbsent(filePath, k -> new AtomicInteger()).incrementAndGet();
+            return filePath.length();
+        });
+
+        assertAll("results",
+                () -> assertEquals(filePaths, new ArrayList<>(results.keySet()), () -> "are not in the input order"),
+                () -> assertTrue(runsByFile.values().stream().allMatch(runs -> runs.get() == 1),
+                        () -> "have files processed more than once"),
+                () -> assertEquals(filePaths.size(), runsByFile.size(), () -> "have skipped files"),
+                () -> assertTrue(runner.getThreads() > 1, () -> "are processed serially by default")
+        );
+
+    }
+
+}
@@ -0,0 +1,45 @@
+import com.jsonanalyzer.main.InclusionIndex;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class InclusionIndexTest {
+
+    @Test
+    @DisplayName("🗂 Finding all the sets containing a key in the memory-mapped index")
+    public void testFindSetNames(@TempDir Path tempDirectory) throws IOException {
+
+        Path indexFilePath = tempDirectory.resolve("sets.idx");
+        InclusionIndex.write(indexFilePath,
+                Arrays.asList("first", "second"),
+                Arrays.asList("src/test/resources/first.json", "src/test/resources/second.json"),
+                Arrays.asList(
+                        Arrays.asList("component.basket.buttons.checkout", "component.save-basket.sign-in-title"),
+                        Arrays.asList("component.basket.buttons.checkout", "component.bolt.*")
+                ));
+
+        try (InclusionIndex index = InclusionIndex.open(indexFilePath)) {
+            assertAll("index",
+                    () -> assertEquals(Arrays.asList("first", "second"),
+                            index.findSetNames("component.basket.buttons.checkout"), () -> "has wrong shared key"),
+                    () -> assertEquals(Collections.singletonList("first"),
+                            index.findSetNames("component.save-basket.sign-in-title"), () -> "has wrong unique key"),
+                    () -> assertEquals(Collections.singletonList("second"),
+                            index.findSetNames("component.bolt.on.section.see.info"), () -> "has wrong pattern key"),
+                    () -> assertTrue(index.findSetNames("component.basket").isEmpty(), () -> "has unknown key"),
+                    () -> assertTrue(index.getOutdatedSetNames().isEmpty(), () -> "is outdated")
+            );
+        }
+
+    }
+
+}
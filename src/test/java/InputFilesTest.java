@@ -0,0 +1,54 @@
+import com.jsonanalyzer.main.InputFiles;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class InputFilesTest {
+
+    @Test
+    @DisplayName("📂 Directories and globs are expanded to the JSON files under them")
+    public void testExpansion(@TempDir Path tempDirectory) throws IOException {
+
+        for (String filePath : Arrays.asList("en/basket/en.json", "en/basket/en (sorted).json", "en/basket/en (old).json",
+                "en/checkout/en.json", "en/checkout/notes.txt", "en/root.json", "de/basket/de.json")) {
+            Path file = tempDirectory.resolve(filePath);
+            Files.createDirectories(file.getParent());
+            Files.write(file, "{}".getBytes());
+        }
+
+        String directory = tempDirectory.toString();
+        // only the sorted file of another input is its result, the root file stands for an output of the run
+        List<String> directoryFiles = InputFiles.expand(
+                Collections.singleton(tempDirectory.resolve("en/root.json").toAbsolutePath().normalize()),
+                filePath -> Collections.singletonList(filePath.resolveSibling(
+                        filePath.getFileName().toString().replace(".json", " (sorted).json"))),
+                directory + "/en");
+        Map<String, String> globFiles = InputFiles.expandWithRelativePaths(directory + "/*/basket/??.json");
+
+        assertAll("expanded files",
+                () -> assertEquals(Arrays.asList(directory + "/en/basket/en (old).json", directory + "/en/basket/en.json",
+                        directory + "/en/checkout/en.json"), directoryFiles, () -> "of the directory are wrong"),
+                () -> assertEquals(Arrays.asList("de/basket/de.json", "en/basket/en.json"),
+                        Arrays.asList(globFiles.keySet().toArray()), () -> "of the glob have wrong relative paths"),
+                () -> assertEquals(Collections.singletonList(directory + "/en/root.json"),
+                        InputFiles.expand(directory + "/en/root.json", directory + "/en/*.json"),
+                        () -> "are repeated"),
+                () -> assertThrows(IllegalArgumentException.class, () -> InputFiles.expand(directory + "/en/**/*.xml"),
+                        () -> "are empty without an error")
+        );
+
+    }
+
+}
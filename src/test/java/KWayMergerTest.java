@@ -0,0 +1,79 @@
+import com.jsonanalyzer.main.KWayMerger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class KWayMergerTest {
+
+    @Test
+    @DisplayName("🔀 Merging sorted cursors groups equal keys in the order of the cursors")
+    public void testMergingGroups() throws IOException {
+
+        List<KWayMerger.EntryCursor<String>> cursors = Arrays.asList(
+                cursorOf("a", "first", "c", "first"),
+                cursorOf("b", "second", "c", "second"),
+                cursorOf("c", "third", "d", "third")
+        );
+
+        List<String> mergedEntries = new ArrayList<>();
+        try (KWayMerger<String> merger = new KWayMerger<>(cursors)) {
+            while (merger.nextGroup()) {
+                StringBuilder entry = new StringBuilder(merger.getKey()).append('=');
+                for (int i = 0; i < merger.getGroupSize(); i++) {
+                    entry.append(merger.getSourceIndex(i)).append(':').append(merger.getValue(i)).append(' ');
+                }
+                mergedEntries.add(entry.toString().trim());
+            }
+        }
+
+        assertEquals(Arrays.asList("a=0:first", "b=1:second", "c=0:first 1:second 2:third", "d=2:third"),
+                mergedEntries, () -> "merged entries are wrong");
+
+    }
+
+    private static KWayMerger.EntryCursor<String> cursorOf(String... keysAndValues) {
+
+        Map<String, String> entries = new TreeMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            entries.put(keysAndValues[i], keysAndValues[i + 1]);
+        }
+        Iterator<Map.Entry<String, String>> iterator = entries.entrySet().iterator();
+
+        return new KWayMerger.EntryCursor<String>() {
+
+            private Map.Entry<String, String> entry;
+
+            @Override
+            public boolean next() {
+                entry = iterator.hasNext() ? iterator.next() : null;
+                return entry != null;
+            }
+
+            @Override
+            public String getKey() {
+                return entry.getKey();
+            }
+
+            @Override
+            public String getValue() {
+                return entry.getValue();
+            }
+
+            @Override
+            public void close() {
+            }
+
+        };
+
+    }
+
+}
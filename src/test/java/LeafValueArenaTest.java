@@ -0,0 +1,96 @@
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.jsonanalyzer.main.LeafValueArena;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LeafValueArenaTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ObjectMapper SMILE_MAPPER = new ObjectMapper(new SmileFactory());
+
+    @Test
+    @DisplayName("🧱 Leaf values read back from the arena and are written the same way as the nodes")
+    public void testRoundTrip() throws Exception {
+
+        StringBuilder longValue = new StringBuilder();
+        for (int i = 0; i < 300_000; i++) {
+            longValue.append((char) ('a' + i % 26));
+        }
+
+        List<JsonNode> values = Arrays.asList(
+                MAPPER.readTree("\"plain text\""),
+                MAPPER.readTree("\"\""),
+                MAPPER.readTree("\"quotes \\\" and \\\\ and \\n new line\""),
+                MAPPER.readTree("\"Übersicht, корзина, 購物車\""),
+                MAPPER.readTree("\"emoji \\uD83D\\uDE00\""),
+                MAPPER.readTree("42.5"),
+                MAPPER.readTree("true"),
+                MAPPER.readTree("null"),
+                MAPPER.readTree("[1, \"two\"]"),
+                MAPPER.getNodeFactory().textNode(longValue.toString())
+        );
+
+        LeafValueArena arena = new LeafValueArena();
+        List<Long> references = new ArrayList<>();
+        // enough values to fill more than one chunk
+        for (int i = 0; i < 5; i++) {
+            for (JsonNode value : values) {
+                references.add(arena.add(value));
+            }
+        }
+
+        // the JSON result files are written by the char-based generators, the Smile ones get the bytes of the arena
+        StringWriter expected = new StringWriter();
+        StringWriter actual = new StringWriter();
+        ByteArrayOutputStream expectedSmile = new ByteArrayOutputStream();
+        ByteArrayOutputStream actualSmile = new ByteArrayOutputStream();
+        try (JsonGenerator expectedGenerator = MAPPER.createGenerator(expected);
+             JsonGenerator actualGenerator = MAPPER.createGenerator(actual);
+             JsonGenerator expectedSmileGenerator = SMILE_MAPPER.createGenerator(expectedSmile);
+             JsonGenerator actualSmileGenerator = SMILE_MAPPER.createGenerator(actualSmile)) {
+            expectedGenerator.writeStartArray();
+            actualGenerator.writeStartArray();
+            expectedSmileGenerator.writeStartArray();
+            actualSmileGenerator.writeStartArray();
+            for (int i = 0; i < references.size(); i++) {
+                MAPPER.writeTree(expectedGenerator, values.get(i % values.size()));
+                arena.writeChars(references.get(i), actualGenerator);
+                SMILE_MAPPER.writeTree(expectedSmileGenerator, values.get(i % values.size()));
+                arena.write(references.get(i), actualSmileGenerator);
+            }
+            expectedGenerator.writeEndArray();
+            actualGenerator.writeEndArray();
+            expectedSmileGenerator.writeEndArray();
+            actualSmileGenerator.writeEndArray();
+        }
+
+        assertAll("arena",
+                () -> assertTrue(references.get(4) >= 0, () -> "keeps the emojis as nodes"),
+                () -> {
+                    for (int i = 0; i < references.size(); i++) {
+                        assertEquals(values.get(i % values.size()), arena.get(references.get(i)),
+                                "value read back is wrong");
+                    }
+                },
+                () -> assertEquals(expected.toString(), actual.toString(), () -> "written values are wrong"),
+                // Smile has several encodings of the same string, so the values are compared once read back
+                () -> assertEquals(SMILE_MAPPER.readTree(expectedSmile.toByteArray()),
+                        SMILE_MAPPER.readTree(actualSmile.toByteArray()), () -> "written Smile values are wrong")
+        );
+
+    }
+
+}
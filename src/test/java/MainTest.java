@@ -1,7 +1,10 @@
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.TextNode;
 import com.google.common.collect.Comparators;
+import com.jsonanalyzer.main.JsonFlattener;
 import com.jsonanalyzer.main.Main;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -10,13 +13,20 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -81,4 +91,299 @@ public class MainTest {
 
     }
 
+    @DisplayName("🌊 Streaming flattening gives the same entries as the tree-based one:")
+    @ParameterizedTest(name = "from {0}")
+    @ValueSource(strings = {"src/test/resources/first.json", "src/test/resources/second.json"})
+    public void testStreamingFlattening(String path) throws IOException {
+
+        Map<String, JsonNode> expectedPlainMap = Main.getSortedPlainMapOfNodes(Main.readJsonTreeByFilePath(path));
+        Map<String, JsonNode> streamedPlainMap = new JsonFlattener(new ObjectMapper().reader())
+                .flattenToSortedMap(Paths.get(path));
+
+        assertAll("streamed key map",
+                () -> assertEquals(expectedPlainMap, streamedPlainMap, () -> "has different entries"),
+                () -> assertEquals(new ArrayList<>(expectedPlainMap.keySet()), new ArrayList<>(streamedPlainMap.keySet()),
+                        () -> "has different order")
+        );
+
+    }
+
+    @Test
+    @DisplayName("🚿 Streaming entries to the disk gives the same content as serializing them at once")
+    public void testWriteEntriesToFile(@TempDir Path tempDirectory) throws IOException {
+
+        Map<String, JsonNode> sortedPlainMap =
+                Main.getSortedPlainMapOfNodes(Main.readJsonTreeByFilePath("src/test/resources/first.json"));
+        String expectedContent = new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(sortedPlainMap);
+
+        final String tempFileName = "result.json";
+        Main.writeEntriesToFile(tempDirectory, tempFileName, sortedPlainMap);
+
+        assertAll("written file",
+                () -> assertEquals(expectedContent,
+                        new String(Files.readAllBytes(tempDirectory.resolve(tempFileName)), StandardCharsets.UTF_8),
+                        () -> "has different content"),
+                () -> assertEquals(1, Files.list(tempDirectory).count(), () -> "has temporary files left behind")
+        );
+
+    }
+
+    @Test
+    @DisplayName("🔍 Finding unique and changed entries of two sorted key maps")
+    public void testFindUniqueEntries() {
+
+        Map<String, JsonNode> firstPlainMap = new TreeMap<>();
+        firstPlainMap.put("Basket.title", TextNode.valueOf("Basket"));
+        firstPlainMap.put("basket.title", TextNode.valueOf("basket"));
+        firstPlainMap.put("checkout", TextNode.valueOf("Check out"));
+        firstPlainMap.put("empty", TextNode.valueOf("Empty"));
+
+        Map<String, JsonNode> secondPlainMap = new TreeMap<>();
+        secondPlainMap.put("basket.title", TextNode.valueOf("basket"));
+        secondPlainMap.put("checkout", TextNode.valueOf("Checkout"));
+        secondPlainMap.put("sign-in", TextNode.valueOf("Sign in"));
+
+        Map<String, JsonNode>[] result = Main.findUniqueEntries(firstPlainMap, secondPlainMap, true);
+
+        assertAll("comparison result",
+                () -> assertEquals(Arrays.asList("Basket.title", "empty"), new ArrayList<>(result[0].keySet()),
+                        () -> "has wrong unique keys of the first map"),
+                () -> assertEquals(Collections.singletonList("sign-in"), new ArrayList<>(result[1].keySet()),
+                        () -> "has wrong unique keys of the second map"),
+                () -> assertEquals(Collections.singletonList("checkout"), new ArrayList<>(result[2].keySet()),
+                        () -> "has wrong changed keys"),
+                () -> assertEquals("Checkout", result[2].get("checkout").get("second").asText(),
+                        () -> "has wrong changed value")
+        );
+
+    }
+
+    @Test
+    @DisplayName("⏱ Reporting the stats of each phase of the comparison")
+    public void testStatsReport(@TempDir Path tempDirectory) throws IOException {
+
+        Path firstFilePath = Files.copy(Paths.get("src/test/resources/first.json"), tempDirectory.resolve("first.json"));
+        Path secondFilePath = Files.copy(Paths.get("src/test/resources/second.json"), tempDirectory.resolve("second.json"));
+        Path statsFilePath = tempDirectory.resolve("stats.json");
+
+        Main.run("-compare", firstFilePath.toString(), secondFilePath.toString(), "--stats", statsFilePath.toString());
+
+        JsonNode statsNode = new ObjectMapper().readTree(statsFilePath.toFile());
+        JsonNode phasesNode = statsNode.get("phases");
+
+        assertAll("stats report",
+                () -> assertEquals("-compare", statsNode.get("option").asText(), () -> "has wrong option"),
+                () -> assertEquals(Arrays.asList("read", "compare", "write"),
+                        Arrays.asList(phasesNode.get(0).get("name").asText(), phasesNode.get(1).get("name").asText(),
+                                phasesNode.get(2).get("name").asText()),
+                        () -> "has wrong phases"),
+                () -> assertEquals(Files.size(firstFilePath) + Files.size(secondFilePath),
+                        phasesNode.get(0).get("bytesRead").asLong(), () -> "has wrong number of bytes read"),
+                () -> assertTrue(phasesNode.get(2).get("entriesWritten").asLong() > 0,
+                        () -> "has no entries written")
+        );
+
+    }
+
+    @Test
+    @DisplayName("🗺 Comparing the base file with each file of the directory")
+    public void testCompareAll(@TempDir Path tempDirectory) throws IOException {
+
+        Path baseFilePath = Files.copy(Paths.get("src/test/resources/first.json"), tempDirectory.resolve("en.json"));
+        Path localesDirectory = Files.createDirectory(tempDirectory.resolve("locales"));
+        Files.copy(Paths.get("src/test/resources/second.json"), localesDirectory.resolve("de.json"));
+        Files.copy(Paths.get("src/test/resources/first.json"), localesDirectory.resolve("fr.json"));
+
+        Main.run("-compare-all", baseFilePath.toString(), localesDirectory.toString(), "-threads", "2");
+
+        JsonNode reportNode = new ObjectMapper().readTree(tempDirectory.resolve("en (matrix).json").toFile());
+        String germanFilePath = localesDirectory.resolve("de.json").toString();
+        String frenchFilePath = localesDirectory.resolve("fr.json").toString();
+
+        assertAll("matrix report",
+                () -> assertEquals(3, reportNode.get("files").get(germanFilePath).get("missing").asInt(),
+                        () -> "has wrong number of missing keys"),
+                () -> assertEquals(2, reportNode.get("files").get(germanFilePath).get("extra").asInt(),
+                        () -> "has wrong number of extra keys"),
+                () -> assertEquals(0, reportNode.get("files").get(frenchFilePath).get("missing").asInt(),
+                        () -> "has missing keys for the same file"),
+                () -> assertEquals(germanFilePath,
+                        reportNode.get("missing").get("component.save-basket.sign-in-title").get(0).asText(),
+                        () -> "has wrong files missing the key"),
+                () -> assertEquals(germanFilePath,
+                        reportNode.get("extra").get("component.basket.return-info").get(0).asText(),
+                        () -> "has wrong files with the extra key")
+        );
+
+    }
+
+    @Test
+    @DisplayName("🗂 Comparing the files of two directories pair by pair, with the summary of the run")
+    public void testCompareDirectories(@TempDir Path tempDirectory) throws IOException {
+
+        Path firstDirectory = Files.createDirectories(tempDirectory.resolve("en/basket"));
+        Path secondDirectory = Files.createDirectories(tempDirectory.resolve("de/basket"));
+        Files.copy(Paths.get("src/test/resources/first.json"), firstDirectory.resolve("messages.json"));
+        Files.copy(Paths.get("src/test/resources/second.json"), secondDirectory.resolve("messages.json"));
+        Files.copy(Paths.get("src/test/resources/second.json"), secondDirectory.resolve("extra.json"));
+        Path summaryFilePath = tempDirectory.resolve("summary.json");
+
+        Main.run("-compare", tempDirectory.resolve("en").toString(), tempDirectory.resolve("de").toString(),
+                "-threads", "2", "--summary", summaryFilePath.toString());
+
+        ObjectMapper mapper = new ObjectMapper();
+        Map<String, JsonNode> secondEntries =
+                Main.getSortedPlainMapOfNodes(Main.readJsonTreeByFilePath("src/test/resources/second.json"));
+        Map<String, JsonNode>[] expectedEntries = Main.findUniqueEntries(
+                Main.getSortedPlainMapOfNodes(Main.readJsonTreeByFilePath("src/test/resources/first.json")), secondEntries
+        );
+        JsonNode summaryNode = mapper.readTree(summaryFilePath.toFile());
+
+        assertAll("directories comparison",
+                () -> assertEquals(mapper.valueToTree(expectedEntries[0]),
+                        mapper.readTree(firstDirectory.resolve("messages (unique).json").toFile()),
+                        () -> "has wrong unique entries of the first file"),
+                () -> assertEquals(mapper.valueToTree(expectedEntries[1]),
+                        mapper.readTree(secondDirectory.resolve("messages (unique).json").toFile()),
+                        () -> "has wrong unique entries of the second file"),
+                () -> assertEquals(mapper.valueToTree(secondEntries),
+                        mapper.readTree(secondDirectory.resolve("extra (unique).json").toFile()),
+                        () -> "has wrong entries of the file without a pair"),
+                () -> assertEquals(3, summaryNode.get("filesCount").asInt(), () -> "has wrong number of files in summary"),
+                () -> assertEquals(secondDirectory.resolve("extra (unique).json").toString(),
+                        summaryNode.get("files").get(secondDirectory.resolve("extra.json").toString())
+                                .get("results").get(0).asText(),
+                        () -> "has wrong results in summary")
+        );
+
+    }
+
+    @Test
+    @DisplayName("🔁 Merging a directory again doesn't pick up the merged file, the summary or the stats of the last run")
+    public void testMergeDirectoryRerun(@TempDir Path tempDirectory) throws IOException {
+
+        Files.copy(Paths.get("src/test/resources/first.json"), tempDirectory.resolve("first.json"));
+        Files.copy(Paths.get("src/test/resources/second.json"), tempDirectory.resolve("second.json"));
+        Path mergedFilePath = tempDirectory.resolve("merged.json");
+        Path summaryFilePath = tempDirectory.resolve("summary.json");
+        Path statsFilePath = tempDirectory.resolve("stats.json");
+        String[] args = {"-merge", tempDirectory.toString(),
+                "--summary", summaryFilePath.toString(), "--stats", statsFilePath.toString()};
+
+        Main.run(args);
+        String firstMergedContent = new String(Files.readAllBytes(mergedFilePath), StandardCharsets.UTF_8);
+        Main.run(args);
+
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode summaryNode = mapper.readTree(summaryFilePath.toFile());
+
+        assertAll("merge rerun",
+                () -> assertEquals(2, summaryNode.get("filesCount").asInt(), () -> "has wrong number of files in summary"),
+                () -> assertFalse(summaryNode.get("files").has(mergedFilePath.toString()), () -> "merges the merged file"),
+                () -> assertEquals(firstMergedContent, new String(Files.readAllBytes(mergedFilePath), StandardCharsets.UTF_8),
+                        () -> "gives a different merged file")
+        );
+
+    }
+
+    @Test
+    @DisplayName("⚔ Merging conflicting files writes the conflicts report only when a policy is asked for")
+    public void testMergeConflictsReport(@TempDir Path tempDirectory) throws IOException {
+
+        Path firstFilePath = Files.write(tempDirectory.resolve("first.json"),
+                "{\"a\": \"first\", \"b\": \"same\"}".getBytes(StandardCharsets.UTF_8));
+        Path secondFilePath = Files.write(tempDirectory.resolve("second.json"),
+                "{\"a\": \"second\", \"b\": \"same\"}".getBytes(StandardCharsets.UTF_8));
+        Path mergedFilePath = tempDirectory.resolve("merged.json");
+        Path conflictsFilePath = tempDirectory.resolve("merged (conflicts).json");
+
+        Main.run("-merge", firstFilePath.toString(), secondFilePath.toString());
+        boolean hasPlainConflictsReport = Files.exists(conflictsFilePath);
+        JsonNode plainMergedNode = Main.readJsonTreeByFilePath(mergedFilePath.toString());
+
+        Main.run("-merge", firstFilePath.toString(), secondFilePath.toString(), "-conflict", "first");
+        JsonNode firstWinsMergedNode = Main.readJsonTreeByFilePath(mergedFilePath.toString());
+        JsonNode conflictsNode = Main.readJsonTreeByFilePath(conflictsFilePath.toString());
+
+        assertAll("merge with conflicts",
+                () -> assertFalse(hasPlainConflictsReport, () -> "writes the report without a policy"),
+                () -> assertEquals("second", plainMergedNode.get("a").asText(), () -> "doesn't keep the last value"),
+                () -> assertEquals("first", firstWinsMergedNode.get("a").asText(), () -> "doesn't keep the first value"),
+                () -> assertEquals(1, conflictsNode.size(), () -> "reports wrong conflicts")
+        );
+
+    }
+
+    @Test
+    @DisplayName("🧮 Flattening the arrays into the indexed paths and escaping the dots of the keys")
+    public void testArraysFlattening(@TempDir Path tempDirectory) throws IOException {
+
+        ObjectMapper mapper = new ObjectMapper();
+        String content = "{\"a\": {\"list\": [1, {\"x\": \"one\"}, [3, 4], []], \"b.c\": \"dotted\"}, "
+                + "\"a.b\": {\"c\": \"nested\"}, \"d\": [\"kept\"]}";
+        Path filePath = Files.write(tempDirectory.resolve("arrays.json"), content.getBytes(StandardCharsets.UTF_8));
+        JsonFlattener flattener = new JsonFlattener(mapper.reader(), true, true);
+
+        Map<String, JsonNode> expectedPlainMap = new TreeMap<>();
+        expectedPlainMap.put("a.list[0]", mapper.readTree("1"));
+        expectedPlainMap.put("a.list[1].x", TextNode.valueOf("one"));
+        expectedPlainMap.put("a.list[2][0]", mapper.readTree("3"));
+        expectedPlainMap.put("a.list[2][1]", mapper.readTree("4"));
+        expectedPlainMap.put("a.b\\.c", TextNode.valueOf("dotted"));
+        expectedPlainMap.put("a\\.b.c", TextNode.valueOf("nested"));
+        expectedPlainMap.put("d[0]", TextNode.valueOf("kept"));
+
+        Map<String, JsonNode> treePlainMap = new TreeMap<>();
+        flattener.flatten(mapper.readTree(content), treePlainMap::put);
+
+        assertAll("flattened arrays",
+                () -> assertEquals(expectedPlainMap, flattener.flattenToSortedMap(filePath),
+                        () -> "have wrong streamed entries"),
+                () -> assertEquals(expectedPlainMap, treePlainMap, () -> "have wrong entries of the tree"),
+                () -> assertEquals(Arrays.asList("a.b.c", "a.list", "d"),
+                        new ArrayList<>(new JsonFlattener(mapper.reader()).flattenToSortedMap(filePath).keySet()),
+                        () -> "are flattened without the options")
+        );
+
+    }
+
+    @DisplayName("💾 Writing the results in each format and reading them back as inputs:")
+    @ParameterizedTest(name = "{0}")
+    @ValueSource(strings = {"pretty", "compact", "ndjson", "smile", "cbor"})
+    public void testOutputFormats(String format, @TempDir Path tempDirectory) throws IOException {
+
+        Path filePath = Files.copy(Paths.get("src/test/resources/first.json"), tempDirectory.resolve("en.json"));
+        Map<String, JsonNode> expectedPlainMap = Main.getSortedPlainMapOfNodes(Main.readJsonTreeByFilePath(filePath.toString()));
+
+        Main.run("-sort", filePath.toString(), "--format", format);
+        Path sortedFilePath;
+        try (Stream<Path> files = Files.list(tempDirectory)) {
+            sortedFilePath = files.filter(path -> path.getFileName().toString().startsWith("en (sorted)"))
+                    .findFirst()
+                    .orElseThrow(() -> new AssertionError("no sorted file"));
+        }
+
+        // the result is an input too, and is sorted again into a plain JSON file
+        Path resortedDirectory = Files.createDirectory(tempDirectory.resolve("resorted"));
+        Path copiedFilePath = Files.copy(sortedFilePath, resortedDirectory.resolve(sortedFilePath.getFileName().toString()
+                .replace(" (sorted)", "")));
+        Main.run("-sort", copiedFilePath.toString());
+        String resortedFileName = copiedFilePath.getFileName().toString().replaceAll("\\.[a-z]+$", "") + " (sorted).json";
+
+        assertAll("formatted result",
+                () -> assertEquals(expectedPlainMap,
+                        Main.getSortedPlainMapOfNodes(Main.readJsonTreeByFilePath(sortedFilePath.toString())),
+                        () -> "has wrong entries"),
+                () -> assertEquals(expectedPlainMap,
+                        Main.getSortedPlainMapOfNodes(Main.readJsonTreeByFilePath(
+                                resortedDirectory.resolve(resortedFileName).toString())),
+                        () -> "is read back with wrong entries"),
+                // the emoji is written as its UTF-8 bytes, not as an escaped surrogate pair
+                () -> assertTrue(new String(Files.readAllBytes(resortedDirectory.resolve(resortedFileName)),
+                        StandardCharsets.UTF_8).contains("\"Sign in or register \uD83D\uDE00\""),
+                        () -> "has the emoji escaped")
+        );
+
+    }
+
 }
@@ -0,0 +1,110 @@
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jsonanalyzer.main.Main;
+import com.jsonanalyzer.main.MerkleComparator;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MerkleComparatorTest {
+
+    @Test
+    @DisplayName("🌲 Subtree hashes skip the same subtrees, whatever the keys order and nesting")
+    public void testSubtreeHashes(@TempDir Path tempDirectory) throws IOException {
+
+        Path firstFilePath = tempDirectory.resolve("first.json");
+        Path secondFilePath = tempDirectory.resolve("second.json");
+        Files.write(firstFilePath, ("{\"a.b\": {\"c\": 1, \"d\": \"x\"}, \"e\": {\"f\": true, \"g\": [1, 2]}, \"h\": 1}")
+                .getBytes(StandardCharsets.UTF_8));
+        Files.write(secondFilePath, ("{\"e\": {\"g\": [1, 3], \"f\": true}, \"a\": {\"b.d\": \"x\", \"b\": {\"c\": 1}}, \"h\": 1}")
+                .getBytes(StandardCharsets.UTF_8));
+
+        MerkleComparator comparator = new MerkleComparator(new ObjectMapper().reader());
+        MerkleComparator.SubtreeHashes firstHashes = comparator.computeHashes(firstFilePath);
+        MerkleComparator.SubtreeHashes secondHashes = comparator.computeHashes(secondFilePath);
+
+        Map<String, JsonNode> firstDifferingEntries = comparator.flattenDifferingEntries(firstHashes, secondHashes);
+        Map<String, JsonNode> secondDifferingEntries = comparator.flattenDifferingEntries(secondHashes, firstHashes);
+
+        assertAll("subtree hashes",
+                () -> assertTrue(firstHashes.isSameSubtree("a", secondHashes), () -> "differ for the same entries"),
+                () -> assertTrue(firstHashes.isSameSubtree("a.b", secondHashes), () -> "differ for the dotted keys"),
+                () -> assertEquals("[e.f, e.g, h]", firstDifferingEntries.keySet().toString(),
+                        () -> "don't skip the same subtrees of the first file"),
+                () -> assertEquals("[e.f, e.g, h]", secondDifferingEntries.keySet().toString(),
+                        () -> "don't skip the same subtrees of the second file")
+        );
+
+    }
+
+    @Test
+    @DisplayName("📎 Differing entries are read from the sidecar, without parsing the file again")
+    public void testSidecarLeaves(@TempDir Path tempDirectory) throws IOException {
+
+        Path firstFilePath = tempDirectory.resolve("first.json");
+        Path secondFilePath = tempDirectory.resolve("second.json");
+        Files.copy(Paths.get("src/test/resources/first.json"), firstFilePath);
+        Files.copy(Paths.get("src/test/resources/second.json"), secondFilePath);
+
+        MerkleComparator comparator = new MerkleComparator(new ObjectMapper().reader());
+        MerkleComparator.SubtreeHashes firstHashes = comparator.getHashes(firstFilePath, true);
+        MerkleComparator.SubtreeHashes secondHashes = comparator.getHashes(secondFilePath, true);
+        Map<String, JsonNode> expectedEntries = comparator.flattenDifferingEntries(firstHashes, secondHashes);
+
+        MerkleComparator.SubtreeHashes firstSidecarHashes = comparator.getHashes(firstFilePath, true);
+        // the file can't be parsed anymore, so the entries can only come from the sidecar
+        Files.write(firstFilePath, new byte[0]);
+        Map<String, JsonNode> sidecarEntries = comparator.flattenDifferingEntries(firstSidecarHashes, secondHashes);
+
+        assertAll("sidecar entries",
+                () -> assertTrue(expectedEntries.size() > 0, () -> "have no differing entries"),
+                () -> assertEquals(expectedEntries, sidecarEntries, () -> "differ from the entries of the file")
+        );
+
+    }
+
+    @Test
+    @DisplayName("⚖ Merkle compare gives the same result files as the full compare")
+    public void testSameResultAsFullCompare(@TempDir Path tempDirectory) throws IOException {
+
+        Path fullDirectory = Files.createDirectory(tempDirectory.resolve("full"));
+        Path merkleDirectory = Files.createDirectory(tempDirectory.resolve("merkle"));
+        for (Path directory : new Path[] {fullDirectory, merkleDirectory}) {
+            Files.copy(Paths.get("src/test/resources/first.json"), directory.resolve("first.json"));
+            Files.copy(Paths.get("src/test/resources/second.json"), directory.resolve("second.json"));
+        }
+
+        Main.run("-compare", fullDirectory.resolve("first.json").toString(), fullDirectory.resolve("second.json").toString(),
+                "--values");
+        Main.run("-compare", merkleDirectory.resolve("first.json").toString(), merkleDirectory.resolve("second.json").toString(),
+                "--values", "--merkle-sidecar");
+
+        assertAll("result files",
+                () -> assertEquals(readContent(fullDirectory.resolve("first (unique).json")),
+                        readContent(merkleDirectory.resolve("first (unique).json")), () -> "differ for the first file"),
+                () -> assertEquals(readContent(fullDirectory.resolve("second (unique).json")),
+                        readContent(merkleDirectory.resolve("second (unique).json")), () -> "differ for the second file"),
+                () -> assertEquals(readContent(fullDirectory.resolve("first (changed).json")),
+                        readContent(merkleDirectory.resolve("first (changed).json")), () -> "differ for changed entries"),
+                () -> assertTrue(Files.exists(MerkleComparator.getSidecarFilePath(merkleDirectory.resolve("first.json"))),
+                        () -> "sidecar file is not written")
+        );
+
+    }
+
+    private static String readContent(Path filePath) throws IOException {
+        return new String(Files.readAllBytes(filePath), StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,56 @@
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jsonanalyzer.main.JsonFlattener;
+import com.jsonanalyzer.main.ParseCache;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ParseCacheTest {
+
+    @Test
+    @DisplayName("📦 Reading flattened entries back from the parse cache")
+    public void testCacheHit(@TempDir Path tempDirectory) throws IOException {
+
+        JsonFlattener flattener = new JsonFlattener(new ObjectMapper().reader());
+        ParseCache parseCache = new ParseCache(tempDirectory, 1024 * 1024, flattener);
+        Path filePath = Paths.get("src/test/resources/first.json");
+
+        Map<String, JsonNode> expectedPlainMap = flattener.flattenToSortedMap(filePath);
+        Map<String, JsonNode> missPlainMap = parseCache.flattenToSortedMap(filePath);
+        Map<String, JsonNode> hitPlainMap = parseCache.flattenToSortedMap(filePath);
+
+        assertAll("cached entries",
+                () -> assertEquals(1, Files.list(tempDirectory).count(), () -> "are not stored once"),
+                () -> assertEquals(expectedPlainMap, missPlainMap, () -> "are wrong on cache miss"),
+                () -> assertEquals(expectedPlainMap, hitPlainMap, () -> "are wrong on cache hit"),
+                () -> assertEquals(new ArrayList<>(expectedPlainMap.keySet()), new ArrayList<>(hitPlainMap.keySet()),
+                        () -> "are not sorted on cache hit")
+        );
+
+    }
+
+    @Test
+    @DisplayName("🧹 Evicting least recently used entries from the parse cache")
+    public void testEviction(@TempDir Path tempDirectory) throws IOException {
+
+        ParseCache parseCache = new ParseCache(tempDirectory, 1, new JsonFlattener(new ObjectMapper().reader()));
+
+        parseCache.flattenToSortedMap(Paths.get("src/test/resources/first.json"));
+        parseCache.flattenToSortedMap(Paths.get("src/test/resources/second.json"));
+
+        assertEquals(0, Files.list(tempDirectory).count(), () -> "cache is over its size limit");
+
+    }
+
+}
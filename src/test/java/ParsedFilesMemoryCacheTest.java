@@ -0,0 +1,61 @@
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jsonanalyzer.main.JsonFlattener;
+import com.jsonanalyzer.main.ParsedFilesMemoryCache;
+import com.jsonanalyzer.main.RadixTreeMap;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ParsedFilesMemoryCacheTest {
+
+    @Test
+    @DisplayName("🧠 Keeping the parsed files within the estimated bytes, without copying them on hits")
+    public void testBoundedBySize() throws IOException {
+
+        JsonFlattener flattener = new JsonFlattener(new ObjectMapper().reader());
+        Path firstFilePath = Paths.get("src/test/resources/first.json");
+        Path secondFilePath = Paths.get("src/test/resources/second.json");
+        List<Path> parsedFilesPaths = new ArrayList<>();
+        ParsedFilesMemoryCache.FileParser parser = filePath -> {
+            parsedFilesPaths.add(filePath);
+            return flattener.flattenToSortedMap(filePath);
+        };
+
+        // measure the size of one file, then make room for just one of them
+        ParsedFilesMemoryCache measuringCache = new ParsedFilesMemoryCache(Long.MAX_VALUE);
+        measuringCache.flattenToSortedMap(firstFilePath, flattener::flattenToSortedMap);
+        long fileBytes = measuringCache.getCachedBytes();
+
+        ParsedFilesMemoryCache cache = new ParsedFilesMemoryCache(fileBytes + fileBytes / 2);
+        RadixTreeMap<JsonNode> missPlainMap = cache.flattenToSortedMap(firstFilePath, parser);
+        RadixTreeMap<JsonNode> hitPlainMap = cache.flattenToSortedMap(firstFilePath, parser);
+        cache.flattenToSortedMap(secondFilePath, parser);
+        cache.flattenToSortedMap(firstFilePath, parser);
+        // the first file was evicted by the second one, so it's parsed again
+        int parsesCount = parsedFilesPaths.size();
+
+        ParsedFilesMemoryCache tinyCache = new ParsedFilesMemoryCache(1);
+        tinyCache.flattenToSortedMap(firstFilePath, parser);
+
+        assertAll("cached files",
+                () -> assertTrue(fileBytes > 0, () -> "have no estimated size"),
+                () -> assertSame(missPlainMap, hitPlainMap, () -> "are copied on hit"),
+                () -> assertEquals(3, parsesCount, () -> "are not evicted by size"),
+                () -> assertEquals(1, cache.getCachedFilesCount(), () -> "are kept over the size"),
+                () -> assertEquals(0, tinyCache.getCachedFilesCount(), () -> "are kept when bigger than the cache")
+        );
+
+    }
+
+}
@@ -0,0 +1,139 @@
+import com.jsonanalyzer.main.RadixTreeMap;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RadixTreeMapTest {
+
+    private static final String[] SEGMENTS = {"component", "basket", "buttons", "b", "checkout", "check", "Basket", "", "-", "."};
+
+    @Test
+    @DisplayName("🌳 Radix tree map behaves like a sorted map for random puts and removals")
+    public void testRandomOperations() {
+
+        Random random = new Random(42);
+        RadixTreeMap<Integer> radixTreeMap = new RadixTreeMap<>();
+        TreeMap<String, Integer> treeMap = new TreeMap<>();
+
+        for (int i = 0; i < 5000; i++) {
+            String key = randomKey(random);
+            if (random.nextInt(3) == 0) {
+                assertEquals(treeMap.remove(key), radixTreeMap.remove(key), () -> "removed value is wrong");
+            } else {
+                assertEquals(treeMap.put(key, i), radixTreeMap.put(key, i), () -> "replaced value is wrong");
+            }
+        }
+
+        assertAll("radix tree map",
+                () -> assertEquals(treeMap.size(), radixTreeMap.size(), () -> "has wrong size"),
+                () -> assertEquals(new ArrayList<>(treeMap.entrySet()), new ArrayList<>(radixTreeMap.entrySet()),
+                        () -> "has wrong entries or order"),
+                () -> assertTrue(treeMap.keySet().stream().allMatch(radixTreeMap::containsKey),
+                        () -> "doesn't contain some of the keys")
+        );
+
+    }
+
+    @Test
+    @DisplayName("✂ Querying and removing the entries by prefix")
+    public void testPrefixOperations() {
+
+        RadixTreeMap<Integer> radixTreeMap = new RadixTreeMap<>();
+        for (String key : Arrays.asList("component.basket", "component.basket.buttons.checkout",
+                "component.basket.buttons.continue", "component.basket-info", "component.save-basket.title")) {
+            radixTreeMap.put(key, key.length());
+        }
+
+        assertEquals(Arrays.asList("component.basket.buttons.checkout", "component.basket.buttons.continue"),
+                radixTreeMap.keysWithPrefix("component.basket.b"), () -> "keys with prefix are wrong");
+
+        RadixTreeMap<Boolean> prefixes = new RadixTreeMap<>();
+        prefixes.put("component.basket.", true);
+
+        assertAll("prefix patterns",
+                () -> assertTrue(prefixes.containsPrefixOf("component.basket.buttons"), () -> "prefix is not found"),
+                () -> assertFalse(prefixes.containsPrefixOf("component.basket"), () -> "shorter key is matched"),
+                () -> assertFalse(prefixes.containsPrefixOf("component.basket-info"), () -> "sibling key is matched"),
+                () -> assertTrue(radixTreeMap.containsKeyChars(new StringBuilder("component.basket")),
+                        () -> "key in a buffer is not found"),
+                () -> assertFalse(radixTreeMap.containsKeyChars(new StringBuilder("component.bask")),
+                        () -> "prefix in a buffer is found as a key"),
+                () -> assertTrue(radixTreeMap.hasKeysWithPrefix(new StringBuilder("component.basket.b")),
+                        () -> "prefix in a buffer is not found")
+        );
+
+        assertEquals(2, radixTreeMap.removeWithPrefix("component.basket."), () -> "wrong number of entries removed");
+        assertEquals(Arrays.asList("component.basket", "component.basket-info", "component.save-basket.title"),
+                new ArrayList<>(radixTreeMap.keySet()), () -> "keys left after removal are wrong");
+
+        Iterator<Map.Entry<String, Integer>> iterator = radixTreeMap.entrySet().iterator();
+        iterator.next();
+        iterator.remove();
+        assertEquals(Arrays.asList("component.basket-info", "component.save-basket.title"),
+                radixTreeMap.keySet().stream().collect(Collectors.toList()), () -> "iterator removal is wrong");
+
+    }
+
+    @Test
+    @DisplayName("🧹 Removing the entries while iterating leaves no empty prefixes behind")
+    public void testIteratorRemoval() {
+
+        RadixTreeMap<Integer> stoppedEarlyMap = new RadixTreeMap<>();
+        stoppedEarlyMap.put("a.b.c", 1);
+        stoppedEarlyMap.put("x", 2);
+        Iterator<Map.Entry<String, Integer>> stoppedEarlyIterator = stoppedEarlyMap.entrySet().iterator();
+        stoppedEarlyIterator.next();
+        stoppedEarlyIterator.remove();
+
+        Random random = new Random(42);
+        RadixTreeMap<Integer> radixTreeMap = new RadixTreeMap<>();
+        TreeMap<String, Integer> treeMap = new TreeMap<>();
+        for (int i = 0; i < 2000; i++) {
+            String key = randomKey(random);
+            radixTreeMap.put(key, i);
+            treeMap.put(key, i);
+        }
+        radixTreeMap.entrySet().removeIf(entry -> entry.getValue() % 3 != 0);
+        treeMap.entrySet().removeIf(entry -> entry.getValue() % 3 != 0);
+
+        assertAll("map after iterator removals",
+                () -> assertFalse(stoppedEarlyMap.hasKeysWithPrefix("a."), () -> "has keys of removed prefix"),
+                () -> assertTrue(stoppedEarlyMap.hasKeysWithPrefix("x"), () -> "has no keys of kept prefix"),
+                () -> assertEquals(new ArrayList<>(treeMap.entrySet()), new ArrayList<>(radixTreeMap.entrySet()),
+                        () -> "has wrong entries or order"),
+                () -> assertTrue(treeMap.keySet().stream().allMatch(key ->
+                                radixTreeMap.hasKeysWithPrefix(key) && radixTreeMap.containsKey(key)),
+                        () -> "doesn't contain some of the keys"),
+                () -> assertTrue(Arrays.stream(SEGMENTS).filter(segment -> !segment.isEmpty())
+                                .allMatch(segment -> radixTreeMap.hasKeysWithPrefix(segment)
+                                        == treeMap.keySet().stream().anyMatch(key -> key.startsWith(segment))),
+                        () -> "has keys of removed prefixes")
+        );
+
+    }
+
+    private static String randomKey(Random random) {
+
+        StringBuilder key = new StringBuilder();
+        int segmentsCount = random.nextInt(4);
+        for (int i = 0; i < segmentsCount; i++) {
+            key.append(SEGMENTS[random.nextInt(SEGMENTS.length)]);
+        }
+
+        return key.toString();
+
+    }
+
+}
@@ -0,0 +1,77 @@
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jsonanalyzer.main.DataFormat;
+import com.jsonanalyzer.main.JsonFlattener;
+import com.jsonanalyzer.main.RadixTreeMap;
+import com.jsonanalyzer.main.StreamingCleanupFilter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StreamingCleanupFilterTest {
+
+    @Test
+    @DisplayName("🧽 Streaming cleanup removes the same entries and keeps the source layout")
+    public void testStreamingCleanup(@TempDir Path tempDirectory) throws IOException {
+
+        ObjectMapper mapper = new ObjectMapper();
+        JsonFlattener flattener = new JsonFlattener(mapper.reader());
+        Path sourceFilePath = Paths.get("src/test/resources/first.json");
+        Path cleanFilePath = tempDirectory.resolve("first (clean).json");
+
+        List<String> keysToExclude = Arrays.asList("component.basket.buttons.checkout", "component.bolt.on.section.see.info");
+        List<String> prefixesToExclude = Collections.singletonList("component.basket.buttons.");
+
+        new StreamingCleanupFilter(mapper.reader(), mapper, keysToExclude, prefixesToExclude)
+                .filter(sourceFilePath, cleanFilePath);
+
+        RadixTreeMap<JsonNode> expectedPlainMap = flattener.flattenToSortedMap(sourceFilePath);
+        keysToExclude.forEach(expectedPlainMap::remove);
+        prefixesToExclude.forEach(expectedPlainMap::removeWithPrefix);
+
+        String cleanContent = new String(Files.readAllBytes(cleanFilePath), StandardCharsets.UTF_8);
+
+        assertAll("clean file",
+                () -> assertEquals(expectedPlainMap, flattener.flattenToSortedMap(cleanFilePath),
+                        () -> "has wrong entries"),
+                () -> assertTrue(cleanContent.indexOf("terms.apply") < cleanContent.indexOf("sign-in-title"),
+                        () -> "has keys reordered"),
+                () -> assertFalse(cleanContent.contains("component.basket"),
+                        () -> "keeps the object left empty")
+        );
+
+    }
+
+    @Test
+    @DisplayName("🧺 Streaming cleanup removes the excluded elements of the arrays")
+    public void testArraysCleanup(@TempDir Path tempDirectory) throws IOException {
+
+        ObjectMapper mapper = new ObjectMapper();
+        JsonFlattener flattener = new JsonFlattener(mapper.reader(), true, false);
+        Path sourceFilePath = Files.write(tempDirectory.resolve("arrays.json"),
+                "{\"a\": {\"list\": [1, {\"x\": \"one\", \"y\": \"two\"}, 3]}, \"b\": [1, 2]}".getBytes(StandardCharsets.UTF_8));
+        Path cleanFilePath = tempDirectory.resolve("arrays (clean).json");
+
+        new StreamingCleanupFilter(mapper.reader(), mapper, flattener, DataFormat.PRETTY, Arrays.asList("a.list[0]", "a.list[1].x"),
+                Collections.emptyList()).filter(sourceFilePath, cleanFilePath);
+
+        assertEquals(mapper.readTree("{\"a\": {\"list\": [{\"y\": \"two\"}, 3]}, \"b\": [1, 2]}"),
+                mapper.readTree(cleanFilePath.toFile()), () -> "clean file has wrong content");
+
+    }
+
+}